@@ -1,5 +1,6 @@
 package jp.seo.station.app
 
+import jp.seo.diagram.core.DiagramListener
 import jp.seo.diagram.core.KdTree
 import jp.seo.diagram.core.KdTree.Node
 import jp.seo.diagram.core.Rectangle
@@ -29,6 +30,7 @@ private fun calc(srcFile: String, dstFile: String) {
     println("station size: ${stations.size}")
 
     val diagram = VoronoiDiagram(stations)
+    diagram.setListener(DiagramListener.printTo(System.out))
     diagram.split(Rectangle(112.0, 60.0, 160.0, 20.0))
     println("edge size: ${diagram.edges.size}")
 
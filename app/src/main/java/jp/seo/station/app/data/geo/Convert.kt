@@ -37,7 +37,7 @@ object VoronoiSerializer : KSerializer<VoronoiArea> {
 
     override fun serialize(encoder: Encoder, value: VoronoiArea) {
         require(encoder is JsonEncoder)
-        val element = if (value.enclosed) {
+        val element = if (!value.clipped) {
             encoder.json.encodeToJsonElement(
                 PolygonFeature.fromVoronoi(value)
             )
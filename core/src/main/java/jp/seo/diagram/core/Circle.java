@@ -28,7 +28,9 @@ public class Circle {
      * @return 内部にあるならtrue, otherwise false
      */
     public boolean containsPoint(Point point){
-        return Point.measure(point, center) < radius;
+        double dx = point.getX() - center.getX();
+        double dy = point.getY() - center.getY();
+        return dx * dx + dy * dy < radius * radius;
     }
 
 }
@@ -1,6 +1,8 @@
 package jp.seo.diagram.core;
 
+import java.nio.DoubleBuffer;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * ドロネー図を制作するクラス
@@ -14,21 +16,124 @@ public class DelaunayDiagram {
 
     /**
      * 分割する母点集合を指定してインスタンス化
-     * @param points Setで重複をチェックする
+     * @param points 座標値が一致する点はひとつにまとめる
      */
     public DelaunayDiagram(Collection<? extends Point> points){
-        this.points = new HashSet<>();
-        this.points.addAll(points);
+        this(points, 0.0);
+    }
+
+    /**
+     * 分割する母点集合を指定してインスタンス化.<br>
+     * 互いに許容誤差以内の距離にある点はひとつの代表点にまとめて分割し、
+     * まとめられた点の代表点は{@link #getRepresentative(Point)}で取得できます
+     * @param points 母点
+     * @param tolerance 許容誤差 0なら座標値が一致する点のみまとめる
+     */
+    public DelaunayDiagram(Collection<? extends Point> points, double tolerance){
+        this.representatives = new HashMap<>();
+        this.points = PointMerger.merge(points, tolerance, this.representatives);
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * 座標値の配列からドロネー分割を計算する.<br>
+     * 点ごとのオブジェクトを生成せずに{@link Algorithm#SWEEP_HULL}で計算し、
+     * 結果の頂点indexは入力での位置に一致します. 座標値が一致する点はそのうちいずれかひとつのみ分割に含まれます
+     * @param xs 各点のｘ座標
+     * @param ys 各点のｙ座標 xsと同じ長さ
+     * @return 分割結果
+     */
+    public static FlatTriangulation triangulate(double[] xs, double[] ys){
+        if ( xs.length != ys.length ){
+            throw new IllegalArgumentException("length mismatch : " + xs.length + " , " + ys.length);
+        }
+        double[] coords = new double[xs.length * 2];
+        for ( int i=0 ; i<xs.length ; i++ ){
+            coords[2*i] = xs[i];
+            coords[2*i+1] = ys[i];
+        }
+        return new FlatTriangulation(coords);
+    }
+
+    /**
+     * 座標値の組を並べたバッファからドロネー分割を計算する.<br>
+     * メモリにマップしたファイルから読み込む場合は{@link java.nio.ByteBuffer#order(java.nio.ByteOrder)}で
+     * リトルエンディアンを指定してから{@link java.nio.ByteBuffer#asDoubleBuffer()}で取得したビューを渡します.
+     * バッファの位置は変化しない.<br>
+     * 計算中は各座標値を何度も参照し、結果の{@link FlatTriangulation#getCoordinates()}も配列を返すので、
+     * バッファの残りの要素はヒープ上の{@code double[]}へ一括でコピーしてから計算します.
+     * 点ごとのオブジェクトは生成しないが、座標値と同じ大きさの配列を確保する点に注意してください
+     * @param coords 残りの要素が {@code x0, y0, x1, y1, ...} の順に並ぶ
+     * @return 分割結果 頂点indexはバッファでの組の位置
+     * @see #triangulate(double[], double[])
+     */
+    public static FlatTriangulation triangulate(DoubleBuffer coords){
+        if ( coords.remaining() % 2 != 0 ){
+            throw new IllegalArgumentException("odd number of coordinates : " + coords.remaining());
+        }
+        double[] array = new double[coords.remaining()];
+        coords.duplicate().get(array);
+        return new FlatTriangulation(array);
+    }
+
+    /**
+     * ドロネー分割の計算方法
+     */
+    public enum Algorithm {
+        /**
+         * 外郭の三角形に母点を逐次追加する. 三角形・辺をオブジェクトとして保持する
+         */
+        INCREMENTAL,
+        /**
+         * sweep-hull法. 座標と三角形をプリミティブ配列で保持する
+         * @see FlatTriangulation
+         */
+        SWEEP_HULL,
+        /**
+         * 分割統治法. 分割した点集合を並列に計算する.
+         * 結果は{@link #SWEEP_HULL}と同じくプリミティブ配列で保持する
+         * @see #setParallelism(int)
+         * @see #setSequentialThreshold(int)
+         */
+        DIVIDE_AND_CONQUER
     }
 
     private Set<Point> points;
+    /* 代表点にまとめられた点 => 代表点 */
+    private final Map<Point, Point> representatives;
+    private final double tolerance;
+    /* 次に割り当てる頂点の連番 */
+    private int nextId;
+    private Algorithm algorithm = Algorithm.INCREMENTAL;
+    private InsertionOrder insertionOrder = InsertionOrder.BRIO;
+    private long seed = 0L;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int sequentialThreshold = 4096;
+    private DiagramListener listener = DiagramListener.NONE;
+    private DiagramListener.Metrics metrics;
+    /* split(Rectangle, DiagramVisitor)で渡し終えるまで保持する */
+    private FlatTriangulation mesh;
     private Set<Triangle> solvedTriangle;
     private Set<Edge> solvedEdge;
-    private HashMap<Edge, TrianglePair> solvedPair;
+    private Map<Edge, TrianglePair> solvedPair;
 
-    private Set<Triangle> triangles;
-    private HashMap<Edge, TrianglePair> trianglePairs;
-    private Queue<Edge> edges;
+    /* 計算途中の辺と三角形の組. フリップ操作では要素を生成せず書き換える */
+    private EdgeTable trianglePairs;
+    private ArrayDeque<TrianglePair> queue;
+
+    /**
+     * 最後に生成・変更された三角形の組. その三角形point1-a-bから点の探索を開始する
+     */
+    private TrianglePair lastPair;
+    private Random random;
+    private final Point[] walkVertex = new Point[3];
+
+    /* split後も保持して insert で使う */
+    private Rectangle border;
+    private Triangle container;
+    /* insert で変化した辺を記録する. split中は記録しないのでnull */
+    private List<TrianglePair> changedPairs;
+    private List<Edge> removedEdges;
 
     /**
      * {@link DelaunayDiagram#DelaunayDiagram(Collection)}で指定した母点集合
@@ -38,6 +143,84 @@ public class DelaunayDiagram {
         return points;
     }
 
+    /**
+     * 母点が分割される際の代表点を取得する
+     * @param point インスタンス化または{@link #insert(Point)}で指定した母点
+     * @return 近接する他の点にまとめられた場合はその代表点、さもなければ引数そのもの
+     */
+    public Point getRepresentative(Point point){
+        Point representative = representatives.get(point);
+        return representative == null ? point : representative;
+    }
+
+    /**
+     * {@link #split(Rectangle)}で使う計算方法を指定する.<br>
+     * どの方法でも{@link #getTriangles()}などで同じ形式の結果を取得できる
+     * @param algorithm default is {@link Algorithm#INCREMENTAL}
+     */
+    public void setAlgorithm(Algorithm algorithm){
+        this.algorithm = Objects.requireNonNull(algorithm);
+    }
+
+    /**
+     * {@link #split(Rectangle)}で母点を追加する順序を指定する
+     * @param order default is {@link InsertionOrder#BRIO}
+     */
+    public void setInsertionOrder(InsertionOrder order){
+        this.insertionOrder = Objects.requireNonNull(order);
+    }
+
+    /**
+     * {@link #split(Rectangle)}で使う乱数のシード値を指定する.<br>
+     * 同じ母点集合・同じシード値なら毎回同じ順序で計算される
+     * @param seed default is 0
+     */
+    public void setRandomSeed(long seed){
+        this.seed = seed;
+    }
+
+    /**
+     * 並列計算に使うスレッド数を指定する.<br>
+     * {@link Algorithm#DIVIDE_AND_CONQUER}の分割と{@link VoronoiDiagram}の各領域の計算を並列化し、
+     * その間の進捗は計算中のスレッドから{@link DiagramListener}へ通知されます
+     * @param parallelism 1以下なら並列化しない. default is {@link Runtime#availableProcessors()}
+     */
+    public void setParallelism(int parallelism){
+        this.parallelism = parallelism;
+    }
+
+    protected int getParallelism(){
+        return parallelism;
+    }
+
+    /**
+     * {@link Algorithm#DIVIDE_AND_CONQUER}でこの個数以下の点集合はそれ以上並列化せず逐次的に計算する
+     * @param threshold default is 4096
+     */
+    public void setSequentialThreshold(int threshold){
+        this.sequentialThreshold = threshold;
+    }
+
+    /**
+     * 計算の進捗と計測値を受け取るリスナーを指定する
+     * @param listener nullなら何もしない
+     */
+    public void setListener(DiagramListener listener){
+        this.listener = listener == null ? DiagramListener.NONE : listener;
+    }
+
+    protected DiagramListener getListener(){
+        return listener;
+    }
+
+    /**
+     * 直前の{@link #split(Rectangle)}以降に集計した値
+     * @return Null if {@link #split(Rectangle)} not called yet
+     */
+    public DiagramListener.Metrics getMetrics(){
+        return metrics;
+    }
+
     /**
      * 分割された三角形の集合.
      * @return Null if {@link #split(Rectangle)} not called yet
@@ -66,34 +249,57 @@ public class DelaunayDiagram {
      * ひとつの辺を共有する二つの三角形のペアを表します
      */
     public static class TrianglePair{
-        private TrianglePair(Edge edge, Point point1, Point point2){
-            t1 = new Triangle(edge.a, edge.b, point1);
-            t2 = new Triangle(edge.a, edge.b, point2);
+        TrianglePair(Edge edge, Point point1, Point point2){
+            this.edge = edge;
+            this.a = edge.a;
+            this.b = edge.b;
             this.point1 = point1;
             this.point2 = point2;
-            this.edge = edge;
         }
-        private TrianglePair(Edge edge, Point point){
-            t1 = new Triangle(edge, point);
-            t2 = null;
-            point1 = point;
-            point2 = null;
-            this.edge = edge;
+        TrianglePair(Edge edge, Point point){
+            this(edge, point, null);
         }
 
-        private Triangle t1,t2;
+        /**
+         * 辺のオブジェクトを生成せずに端点から直接生成する
+         */
+        private TrianglePair(Point p, Point q, Point point1, Point point2){
+            if ( Point.compare(p, q) < 0 ){
+                this.a = p;
+                this.b = q;
+            }else{
+                this.a = q;
+                this.b = p;
+            }
+            this.point1 = point1;
+            this.point2 = point2;
+        }
+
+        /* 共有する辺の端点. Point#compare の順に a < b */
+        Point a,b;
         private Point point1,point2;
+        /* 端点・頂点が変化したら破棄して必要になった時点で再生成する */
         private Edge edge;
+        private Triangle t1,t2;
 
         public Edge getEdge(){
+            if ( edge == null ){
+                edge = new Edge(a, b);
+            }
             return edge;
         }
 
         Triangle getTriangle1(){
+            if ( t1 == null ){
+                t1 = new Triangle(a, b, point1);
+            }
             return t1;
         }
 
         Triangle getTriangle2(){
+            if ( t2 == null && point2 != null ){
+                t2 = new Triangle(a, b, point2);
+            }
             return t2;
         }
 
@@ -101,25 +307,22 @@ public class DelaunayDiagram {
 
         Point getPoint2(){return point2;}
 
+        /**
+         * @return 辺の反対側の頂点
+         */
+        private Point getOpposite(Point point){
+            return point1.equals(point) ? point2 : point1;
+        }
+
         private void replace(Point change){
-            if ( t2 == null ){
-                t2 = new Triangle(edge, change);
-                return;
-            }
-            double apx = point1.getX() - edge.a.getX();
-            double apy = point1.getY() - edge.a.getY();
-            double bpx = point1.getX() - edge.b.getX();
-            double bpy = point1.getY() - edge.b.getY();
-            double aqx = change.getX() - edge.a.getX();
-            double aqy = change.getY() - edge.a.getY();
-            double bqx = change.getX() - edge.b.getX();
-            double bqy = change.getY() - edge.b.getY();
-            if ( (apx*bpy - apy*bpx) * (aqx*bqy - aqy*bqx) > 0 ){
-                t1 = new Triangle(edge, change);
+            double p = Predicates.orient2d(a, b, point1);
+            double q = Predicates.orient2d(a, b, change);
+            if ( p * q > 0 ){
                 point1 = change;
+                t1 = null;
             }else{
-                t2 = new Triangle(edge, change);
                 point2 = change;
+                t2 = null;
             }
         }
 
@@ -136,21 +339,54 @@ public class DelaunayDiagram {
         }
 
         private boolean isFlip(){
-            return point2 != null && t1.getCircumscribed().containsPoint(point2);
+            return point2 != null && Predicates.inCircumcircle(a, b, point1, point2);
+        }
+
+        /**
+         * フリップ後の二つの三角形が重ならないか（四点が凸四角形をなすか）判定
+         */
+        private boolean canFlip(){
+            return point2 != null && Predicates.orient2d(point1, point2, a) * Predicates.orient2d(point1, point2, b) < 0;
+        }
+
+        /**
+         * 外郭の三角形の頂点を取り除いた分割結果としてのコピーを取得する
+         * @return Null if 辺の端点が外郭の三角形の頂点、または辺の両側とも外郭の三角形の頂点
+         */
+        private TrianglePair toSolved(Triangle container){
+            if ( container.isVertex(a) || container.isVertex(b) ) return null;
+            TrianglePair copy = new TrianglePair(a, b, point1, point2);
+            copy.removeBoundary(container);
+            if ( copy.point1 == null || container.isVertex(copy.point1) ) return null;
+            // 計算途中の頂点から元の母点に戻す
+            return new TrianglePair(
+                    new Edge(Vertex.source(a), Vertex.source(b)),
+                    Vertex.source(copy.point1),
+                    Vertex.source(copy.point2)
+            );
         }
 
         /**
          * フリップ操作
-         * 現在：this.edge を共有する2つの三角形 edge-point1, edge-point2
-         * => 操作後： 辺point1-point2を共有する2つ三角形
+         * 現在：辺a-b を共有する2つの三角形 edge-point1, edge-point2
+         * => 操作後： 辺point1-point2を共有する2つ三角形.
+         * オブジェクトは新たに生成しない
          */
         private void flip(){
-            Edge old = this.edge;
-            this.edge = new Edge(point1, point2);
-            point1 = old.a;
-            point2 = old.b;
-            t1 = new Triangle(edge, point1);
-            t2 = new Triangle(edge, point2);
+            Point oldA = a;
+            Point oldB = b;
+            if ( Point.compare(point1, point2) < 0 ){
+                a = point1;
+                b = point2;
+            }else{
+                a = point2;
+                b = point1;
+            }
+            point1 = oldA;
+            point2 = oldB;
+            edge = null;
+            t1 = null;
+            t2 = null;
         }
     }
 
@@ -159,271 +395,1019 @@ public class DelaunayDiagram {
      * @param border すべての母点を内部に含むような矩形
      */
     public void split(Rectangle border){
-        long time = System.currentTimeMillis();
+        metrics = new DiagramListener.Metrics();
+        splitDelaunay(border, true);
+        onSplit(border);
+        listener.onCompleted(metrics);
+    }
+
+    /**
+     * ドロネー図分割を計算し、結果を集合として保持せずに順次visitorへ渡す.<br>
+     * 三角形・辺の集合やマッピングを生成しないので、{@link #split(Rectangle)}より少ないメモリで計算できます.
+     * 計算後は{@link #getTriangles()}などの結果はNullを返し、{@link #insert(Point)}・{@link #remove(Point)}も呼び出せません
+     * @param border すべての母点を内部に含むような矩形
+     * @param visitor 分割結果を受け取る
+     */
+    public void split(Rectangle border, DiagramVisitor visitor){
+        Objects.requireNonNull(visitor);
+        metrics = new DiagramListener.Metrics();
+        splitDelaunay(border, false);
+        Progress progress = new Progress(listener, DiagramListener.Phase.EXTRACTION, 0);
+        int cnt = visitDelaunay(visitor);
+        progress.complete(cnt, metrics);
+        onSplit(border, visitor);
+        mesh = null;
+        release();
+        listener.onCompleted(metrics);
+    }
+
+    /**
+     * {@link #split(Rectangle)}でドロネー分割を計算した直後に呼ばれる
+     * @param border {@link #split(Rectangle)}で指定された矩形
+     */
+    protected void onSplit(Rectangle border){}
+
+    /**
+     * {@link #split(Rectangle, DiagramVisitor)}で三角形と辺をすべて渡した直後に呼ばれる.
+     * 計算途中の分割は{@link #forEachSite(BiConsumer)}で参照できる
+     * @param border {@link #split(Rectangle, DiagramVisitor)}で指定された矩形
+     * @param visitor {@link #split(Rectangle, DiagramVisitor)}で指定されたvisitor
+     */
+    protected void onSplit(Rectangle border, DiagramVisitor visitor){}
+
+    private void splitDelaunay(Rectangle border, boolean extract){
+        if ( algorithm != Algorithm.INCREMENTAL ){
+            for ( Point point : points ){
+                if ( !border.containsPoint(point) ){
+                    throw new IllegalArgumentException("point outside border Rectangle");
+                }
+            }
+            Progress progress = new Progress(listener, DiagramListener.Phase.TRIANGULATION, points.size());
+            List<Point> list = new ArrayList<>(points);
+            FlatTriangulation mesh = algorithm == Algorithm.SWEEP_HULL ?
+                    new FlatTriangulation(list) :
+                    DivideAndConquer.triangulate(list, parallelism, sequentialThreshold);
+            metrics.pointsInserted = points.size();
+            progress.complete(points.size(), metrics);
+            this.border = border;
+            release();
+            if ( extract ){
+                solvedTriangle = mesh.getTriangles();
+                solvedEdge = mesh.getEdges();
+                solvedPair = mesh.getEdgeTriangleMap();
+            }else{
+                this.mesh = mesh;
+                solvedTriangle = null;
+                solvedEdge = null;
+                solvedPair = null;
+            }
+            return;
+        }
+
+        // 頂点に連番を割り当てる
+        List<Point> vertices = new ArrayList<>(points.size());
+        nextId = 0;
+        for ( Point point : points ){
+            vertices.add(new Vertex(point, nextId++));
+        }
 
         // すべての点を内部に含む三角形を適当に設定
-        final Triangle container = border.getContainer();
+        Triangle outer = border.getContainer();
+        final Triangle container = new Triangle(
+                new Vertex(outer.a, nextId++),
+                new Vertex(outer.b, nextId++),
+                new Vertex(outer.c, nextId++)
+        );
+        this.container = container;
+        this.border = border;
 
         // 初期化
-        triangles = new HashSet<>();
-        edges = new LinkedList<>();
-        trianglePairs = new HashMap<>();
-        triangles.add(container);
-        Edge ab = new Edge(container.a, container.b);
-        Edge bc = new Edge(container.b, container.c);
-        Edge ca = new Edge(container.c, container.a);
-        trianglePairs.put(ab, new TrianglePair(ab, container.c));
-        trianglePairs.put(bc, new TrianglePair(bc, container.a));
-        trianglePairs.put(ca, new TrianglePair(ca, container.b));
-
-        System.out.println("calculating delaunay diagram...");
+        queue = new ArrayDeque<>();
+        trianglePairs = new EdgeTable(points.size() * 3 + 3);
+        trianglePairs.put(new TrianglePair(new Edge(container.a, container.b), container.c));
+        trianglePairs.put(new TrianglePair(new Edge(container.b, container.c), container.a));
+        lastPair = new TrianglePair(new Edge(container.c, container.a), container.b);
+        trianglePairs.put(lastPair);
+        random = new Random(seed);
 
         // 点を三角形内部に逐次的に追加していく
-        int size = points.size();
+        List<Point> order = insertionOrder.sort(vertices, random);
+        Progress progress = new Progress(listener, DiagramListener.Phase.TRIANGULATION, order.size());
         int cnt = 0;
-        for ( Point point : points ){
-            Triangle t = getContainer(point);
+        for ( Point point : order ){
+            Point[] t = getContainer(point);
             if ( t == null ){
                 throw new IllegalArgumentException("point outside border Rectangle");
             }
-            addPoint(point, t);
-            System.out.print(String.format(Locale.US,"\r%.2f%% complete  ", (double)cnt++ *100 / size));
+            addPoint(point, t[0], t[1], t[2]);
+            progress.update(++cnt);
+        }
+        progress.complete(cnt, metrics);
+
+        // 母点集合の凸包を求めて外郭の三角形との間を張り直す
+        progress = new Progress(listener, DiagramListener.Phase.HULL, points.size());
+        List<Point> hull = convexHull(vertices);
+        int frameSize = hull.size() < 3 ? 0 : fillHull(hull, vertices);
+        progress.complete(frameSize, metrics);
+        if ( !extract ){
+            solvedTriangle = null;
+            solvedEdge = null;
+            solvedPair = null;
+            return;
         }
 
+        progress = new Progress(listener, DiagramListener.Phase.EXTRACTION, 0);
+        final Set<Triangle> triangles = new HashSet<>();
+        final Set<Edge> edges = new HashSet<>();
+        final Map<Edge, TrianglePair> pairs = new HashMap<>();
+        trianglePairs.forEach(item -> {
+            TrianglePair pair = item.toSolved(container);
+            if ( pair == null ) return;
+            edges.add(pair.getEdge());
+            pairs.put(pair.getEdge(), pair);
+            triangles.add(pair.getTriangle1());
+            if ( pair.point2 != null ) triangles.add(pair.getTriangle2());
+        });
+        solvedTriangle = triangles;
+        solvedEdge = edges;
+        solvedPair = pairs;
 
+        progress.complete(solvedEdge.size(), metrics);
 
+        // 計算途中の状態は insert で使うので破棄しない
+    }
 
-        // 最初に適当に設定した外郭の三角形と頂点を共有するものを取り除く
-        // 同時に残った三角形を内包する多角形を探す
-        final Polygon.Builder frameBuilder = new Polygon.Builder();
-        /* Java7
-        for ( Iterator<Triangle> iterator = triangles.iterator() ; iterator.hasNext() ; ){
-            Triangle next = iterator.next();
-            if ( outside(next, container, frameBuilder) ) iterator.remove();
-        }*/
-        triangles.removeIf( next -> outside(next, container, frameBuilder));
+    /**
+     * 計算途中の状態を破棄する
+     */
+    private void release(){
+        container = null;
+        queue = null;
+        trianglePairs = null;
+        lastPair = null;
+        random = null;
+    }
 
-        if ( !frameBuilder.isClosed() ){
-            throw new RuntimeException("fail to calc frame");
+    /**
+     * 計算途中の分割から三角形と辺を順次渡す
+     * @return 渡した辺の数
+     */
+    private int visitDelaunay(DiagramVisitor visitor){
+        if ( mesh != null ){
+            for ( Triangle t : mesh.getTriangles() ){
+                visitor.visitTriangle(t);
+            }
+            int cnt = 0;
+            for ( TrianglePair pair : mesh.getEdgeTriangleMap().values() ){
+                visitor.visitEdge(pair.getEdge(), pair.getTriangle1(), pair.getTriangle2());
+                cnt++;
+            }
+            return cnt;
         }
-        Polygon frame = frameBuilder.build();
-        List<Point> list = frame.getPoints();
-        // ポリゴンの頂点が左回りに並ぶように調整する
-        normalizeDirection(list);
-        final int length = list.size();
+        final int[] cnt = {0};
+        trianglePairs.forEach(item -> {
+            TrianglePair pair = item.toSolved(container);
+            if ( pair == null ) return;
+            visitor.visitEdge(pair.getEdge(), pair.getTriangle1(), pair.getTriangle2());
+            cnt[0]++;
+            // 三角形の最小の辺（頂点の小さい二点を結ぶ辺）でのみ渡す
+            if ( Point.compare(pair.point1, pair.b) > 0 ) visitor.visitTriangle(pair.getTriangle1());
+            if ( pair.point2 != null && Point.compare(pair.point2, pair.b) > 0 ) visitor.visitTriangle(pair.getTriangle2());
+        });
+        return cnt[0];
+    }
 
-        //=======改良ポイント==================================
-        // すべての点を内包する多角形が凸形になるように調整する
-        Point previous = list.get(length-1);
-        List<Point> newList = new LinkedList<>();
-        for ( int i=0 ; i<length ; i++ ){
-            Point current = list.get(i);
-            Point next = list.get((i+1)%length);
-            double ax = current.getX() - previous.getX();
-            double ay = current.getY() - previous.getY();
-            double bx = next.getX() - current.getX();
-            double by = next.getY() - current.getY();
-            double cross = ax*by - ay*bx;
-            if ( cross > 0 ){
-                // 凸
-                newList.add(current);
-                previous = current;
+    /**
+     * {@link #split(Rectangle, DiagramVisitor)}の計算途中の分割において、
+     * 各母点について辺で結ばれた点との辺を共有する三角形の組を反時計回りの順に列挙する.
+     * 渡されるリストは次の母点で再利用される
+     * @param action 母点とその周囲の三角形の組を受け取る
+     */
+    protected void forEachSite(BiConsumer<Point, List<TrianglePair>> action){
+        final List<TrianglePair> list = new ArrayList<>();
+        if ( mesh != null ){
+            final int size = mesh.getPointSize();
+            for ( int i=0 ; i<size ; i++ ){
+                list.clear();
+                if ( mesh.getPairsAround(i, list) ) action.accept(mesh.getPoint(i), list);
+            }
+            return;
+        }
+        // 各母点から辺で結ばれた点をひとつずつ選んで辿り始める
+        final Map<Point, Point> start = new HashMap<>();
+        trianglePairs.forEach(pair -> {
+            if ( container.isVertex(pair.a) || container.isVertex(pair.b) ) return;
+            start.putIfAbsent(pair.a, pair.b);
+            start.putIfAbsent(pair.b, pair.a);
+        });
+        for ( Map.Entry<Point, Point> entry : start.entrySet() ){
+            list.clear();
+            Point site = entry.getKey();
+            for ( Point neighbor : getLinkPolygon(site, entry.getValue()) ){
+                if ( container.isVertex(neighbor) ) continue;
+                TrianglePair pair = trianglePairs.get(site, neighbor).toSolved(container);
+                if ( pair != null ) list.add(pair);
+            }
+            action.accept(Vertex.source(site), list);
+        }
+    }
+
+    /**
+     * 分割済みの図に母点を追加する.<br>
+     * 追加した点の周囲のみ再分割し、{@link #getTriangles()}などの結果も変化した部分だけ更新します.
+     * {@link Algorithm#INCREMENTAL}で{@link #split(Rectangle)}した後のみ呼び出せます
+     * @param point {@link #split(Rectangle)}で指定した矩形の内部にある点
+     * @return 隣接する点が変化した母点の集合（追加した点を含む）.
+     * 既に同じ点が存在する場合、または許容誤差以内に母点が存在し{@link #getRepresentative(Point)}でその代表点にまとめた場合は空集合
+     * @throws IllegalStateException 分割を計算していない、または逐次追加法以外で計算した場合
+     */
+    public Set<Point> insert(Point point){
+        if ( trianglePairs == null ){
+            throw new IllegalStateException("not split yet by Algorithm.INCREMENTAL");
+        }
+        if ( !border.containsPoint(point) ){
+            throw new IllegalArgumentException("point outside border Rectangle");
+        }
+        if ( points.contains(point) ) return Collections.emptySet();
+        Point[] t = getContainer(point);
+        if ( t == null ){
+            throw new IllegalArgumentException("point outside border Rectangle");
+        }
+        if ( tolerance > 0 ){
+            Point nearest = findNearestVertex(point, t);
+            if ( nearest != null && nearest.measure(point) <= tolerance ){
+                // インスタンス化の際と同様に近接する母点へまとめる
+                representatives.put(point, Vertex.source(nearest));
+                return Collections.emptySet();
+            }
+        }
+        changedPairs = new ArrayList<>();
+        removedEdges = new ArrayList<>();
+        try {
+            Vertex vertex = new Vertex(point, nextId);
+            addPoint(vertex, t[0], t[1], t[2]);
+            if ( changedPairs.isEmpty() ){
+                // 既存の頂点に一致
+                return Collections.emptySet();
+            }
+            nextId++;
+            points.add(point);
+            representatives.remove(point);
+            repairHull(vertex, t[0]);
+            return updateSolved();
+        } finally {
+            changedPairs = null;
+            removedEdges = null;
+        }
+    }
+
+    /**
+     * 分割済みの図から母点を取り除く.<br>
+     * 取り除く点を頂点とする三角形がなす星形の穴のみを、外接円が他の頂点を含まない耳から順に切り出して再分割し、
+     * {@link #getTriangles()}などの結果も変化した部分だけ更新します.
+     * {@link Algorithm#INCREMENTAL}で{@link #split(Rectangle)}した後のみ呼び出せます
+     * @param point 取り除く母点
+     * @return 隣接する点が変化した母点の集合（取り除いた点は含まない）. 該当する母点が存在しない場合は空集合
+     * @throws IllegalStateException 分割を計算していない、または逐次追加法以外で計算した場合
+     */
+    public Set<Point> remove(Point point){
+        if ( trianglePairs == null ){
+            throw new IllegalStateException("not split yet by Algorithm.INCREMENTAL");
+        }
+        if ( !points.contains(point) ) return Collections.emptySet();
+        Point[] t = getContainer(point);
+        Point vertex = null;
+        Point neighbor = null;
+        if ( t != null ){
+            for ( Point v : t ){
+                if ( v.equals(point) ){
+                    vertex = v;
+                }else if ( neighbor == null ){
+                    neighbor = v;
+                }
+            }
+        }
+        if ( vertex == null ){
+            throw new IllegalStateException("vertex not found in diagram : " + point.toString());
+        }
+        changedPairs = new ArrayList<>();
+        removedEdges = new ArrayList<>();
+        try {
+            List<Point> link = getLinkPolygon(vertex, neighbor);
+            fillHole(vertex, link);
+            points.remove(point);
+            representatives.values().removeIf(point::equals);
+            for ( Point v : link ){
+                if ( container.isVertex(v) ) continue;
+                // 穴の周囲の点のいずれかとは辺で結ばれている
+                for ( Point w : link ){
+                    if ( !w.equals(v) && trianglePairs.get(v, w) != null ){
+                        repairHull(v, w);
+                        break;
+                    }
+                }
+            }
+            Set<Point> changed = updateSolved();
+            changed.remove(vertex);
+            return changed;
+        } finally {
+            changedPairs = null;
+            removedEdges = null;
+        }
+    }
+
+    /**
+     * 点を取り除いてできる穴を再分割する
+     * @param removed 取り除く点
+     * @param link removedと辺で結ばれた点. 反時計回りの順
+     */
+    private void fillHole(Point removed, List<Point> link){
+        queue.clear();
+        for ( Point v : link ){
+            trianglePairs.remove(removed, v);
+            onRemoved(removed, v);
+        }
+        List<Point> hole = new ArrayList<>(link);
+        while ( hole.size() > 3 ){
+            final int size = hole.size();
+            int ear = -1;
+            for ( int i=0 ; i<size && ear < 0 ; i++ ){
+                if ( isEar(hole, i, true) ) ear = i;
+            }
+            if ( ear < 0 ){
+                // 誤差で見つからない場合は外接円を問わず切り出し後でフリップする
+                for ( int i=0 ; i<size && ear < 0 ; i++ ){
+                    if ( isEar(hole, i, false) ) ear = i;
+                }
+            }
+            if ( ear < 0 ){
+                throw new IllegalStateException("fail to fill hole at " + removed.toString());
+            }
+            Point u = hole.get((ear-1+size)%size);
+            Point v = hole.get(ear);
+            Point w = hole.get((ear+1)%size);
+            replaceInHole(u, v, w);
+            replaceInHole(v, w, u);
+            TrianglePair uw = new TrianglePair(u, w, v, null);
+            trianglePairs.put(uw);
+            onChanged(uw);
+            queue.offer(uw);
+            hole.remove(ear);
+        }
+        Point u = hole.get(0);
+        Point v = hole.get(1);
+        Point w = hole.get(2);
+        replaceInHole(u, v, w);
+        replaceInHole(v, w, u);
+        replaceInHole(w, u, v);
+        resolveDelaunay();
+    }
+
+    /**
+     * 穴の辺abの穴側の頂点をcに置き換える
+     */
+    private void replaceInHole(Point a, Point b, Point c){
+        TrianglePair pair = trianglePairs.get(a, b);
+        pair.replace(c);
+        onChanged(pair);
+        queue.offer(pair);
+        lastPair = pair;
+    }
+
+    /**
+     * 穴の頂点hole[i]で三角形を切り出せるか判定する
+     * @param delaunay 三角形の外接円が穴の他の頂点を含まないことも判定する
+     */
+    private boolean isEar(List<Point> hole, int i, boolean delaunay){
+        final int size = hole.size();
+        Point u = hole.get((i-1+size)%size);
+        Point v = hole.get(i);
+        Point w = hole.get((i+1)%size);
+        if ( Predicates.orient2d(u, v, w) <= 0 ) return false;
+        for ( int k=2 ; k<size-1 ; k++ ){
+            Point x = hole.get((i+k)%size);
+            if ( delaunay ){
+                if ( Predicates.inCircumcircle(u, v, w, x) ) return false;
             }else{
-                // 凹
-                addPointOutside(previous, current, next);
+                if ( Predicates.orient2d(u, v, x) >= 0 && Predicates.orient2d(v, w, x) >= 0 && Predicates.orient2d(w, u, x) >= 0 ){
+                    return false;
+                }
             }
         }
-        list = newList;
-        //===================================================
+        return true;
+    }
 
-        System.out.println("outline solved.");
-        for ( Point point : list){
-            System.out.println(point.toString());
+    /**
+     * {@link #insert(Point)}・{@link #remove(Point)}で分割結果の辺が変化したときに呼ばれる
+     * @param edge 変化した辺
+     * @param pair 変化後にこの辺を共有する三角形の組. 分割結果から取り除かれた場合はnull
+     */
+    protected void onEdgeChanged(Edge edge, TrianglePair pair){}
+
+    /**
+     * 記録した変化をもとに{@link #getTriangles()}などの分割結果を部分的に更新する
+     * @return 変化した辺の端点
+     */
+    private Set<Point> updateSolved(){
+        Set<Edge> dirty = new HashSet<>(removedEdges);
+        for ( TrianglePair pair : changedPairs ){
+            dirty.add(pair.getEdge());
         }
+        // 変化前の三角形をすべて除いてから変化後の三角形を加える
+        for ( Edge edge : dirty ){
+            TrianglePair old = solvedPair.remove(edge);
+            if ( old != null ){
+                solvedEdge.remove(edge);
+                solvedTriangle.remove(old.getTriangle1());
+                if ( old.getTriangle2() != null ) solvedTriangle.remove(old.getTriangle2());
+            }
+        }
+        Set<Point> changed = new HashSet<>();
+        List<Edge> keys = new ArrayList<>(dirty.size());
+        for ( Edge edge : dirty ){
+            TrianglePair pair = trianglePairs.get(edge.a, edge.b);
+            TrianglePair solved = pair == null ? null : pair.toSolved(container);
+            // 計算途中の頂点から元の母点に戻す
+            Edge key = solved != null ? solved.getEdge() : new Edge(Vertex.source(edge.a), Vertex.source(edge.b));
+            keys.add(key);
+            if ( solved != null ){
+                solvedEdge.add(key);
+                solvedPair.put(key, solved);
+                solvedTriangle.add(solved.getTriangle1());
+                if ( solved.getTriangle2() != null ) solvedTriangle.add(solved.getTriangle2());
+            }
+            if ( !container.isVertex(edge.a) ) changed.add(key.a);
+            if ( !container.isVertex(edge.b) ) changed.add(key.b);
+        }
+        for ( Edge key : keys ){
+            onEdgeChanged(key, solvedPair.get(key));
+        }
+        return changed;
+    }
 
+    /**
+     * 追加した点の周囲で母点集合の凸包が凹んでいたら{@link #addPointOutside(Point, Point, Point)}で埋める
+     * @param point 追加した点
+     * @param neighbor pointと辺で結ばれた点
+     */
+    private void repairHull(Point point, Point neighbor){
+        Deque<Point[]> stack = new ArrayDeque<>();
+        stack.push(new Point[]{point, neighbor});
+        Point[] hull = getHullNeighbors(point, neighbor);
+        if ( hull != null ){
+            stack.push(new Point[]{hull[0], point});
+            stack.push(new Point[]{hull[1], point});
+        }
+        while ( !stack.isEmpty() ){
+            Point[] item = stack.pop();
+            Point current = item[0];
+            hull = getHullNeighbors(current, item[1]);
+            if ( hull == null ) continue;
+            if ( Predicates.orient2d(hull[0], current, hull[1]) < 0 ){
+                addPointOutside(hull[0], current, hull[1]);
+                if ( trianglePairs.get(hull[0], hull[1]) != null ){
+                    stack.push(new Point[]{hull[0], hull[1]});
+                    stack.push(new Point[]{hull[1], hull[0]});
+                }
+            }
+        }
+    }
 
-        solvedTriangle = triangles;
+    /**
+     * 計算途中の分割において凸包上で隣り合う点を取得する
+     * @param point 母点
+     * @param neighbor pointと辺で結ばれた点
+     * @return {反時計回りで前の点, 次の点} Null if 凸包上にない
+     */
+    private Point[] getHullNeighbors(Point point, Point neighbor){
+        if ( trianglePairs.get(point, neighbor) == null ) return null;
+        // 外郭の三角形の頂点の直前が前の点、直後が次の点
+        List<Point> link = getLinkPolygon(point, neighbor);
+        final int size = link.size();
+        Point previous = null;
+        Point next = null;
+        for ( int i=0 ; i<size ; i++ ){
+            Point current = link.get(i);
+            Point following = link.get((i+1)%size);
+            boolean outer = container.isVertex(current);
+            boolean followingOuter = container.isVertex(following);
+            if ( !outer && followingOuter ) previous = current;
+            if ( outer && !followingOuter ) next = following;
+        }
+        return previous == null || next == null ? null : new Point[]{previous, next};
+    }
 
-        solvedEdge = new HashSet<>();
-        for ( Triangle item : solvedTriangle ){
-            solvedEdge.add(new Edge(item.a, item.b));
-            solvedEdge.add(new Edge(item.b, item.c));
-            solvedEdge.add(new Edge(item.c, item.a));
+    /**
+     * 計算途中の分割において指定した点に最も近い母点を探す.<br>
+     * ドロネー分割では最も近い母点でない頂点には必ずそれより近い隣接点があるので、
+     * 点を含む三角形の頂点から近づく隣接点へ辿れば最も近い母点に到達する
+     * @param point 探す点
+     * @param t pointを含む三角形の頂点
+     * @return Null if 母点がひとつも無い
+     */
+    private Point findNearestVertex(Point point, Point[] t){
+        Point nearest = null;
+        Point neighbor = null;
+        double min = Double.POSITIVE_INFINITY;
+        for ( int i=0 ; i<3 ; i++ ){
+            Point v = t[i];
+            if ( container.isVertex(v) ) continue;
+            double distance = v.measure(point);
+            if ( distance < min ){
+                min = distance;
+                nearest = v;
+                neighbor = t[(i+1)%3];
+            }
+        }
+        while ( nearest != null ){
+            Point next = null;
+            for ( Point v : getLinkPolygon(nearest, neighbor) ){
+                if ( container.isVertex(v) ) continue;
+                double distance = v.measure(point);
+                if ( distance < min ){
+                    min = distance;
+                    next = v;
+                }
+            }
+            if ( next == null ) break;
+            neighbor = nearest;
+            nearest = next;
         }
+        return nearest;
+    }
 
-        solvedPair = new HashMap<>();
-        for ( Edge edge : solvedEdge ){
-            TrianglePair pair = trianglePairs.get(edge);
-            if ( pair == null ) throw new NullPointerException();
-            pair.removeBoundary(container);
-            solvedPair.put(edge, pair);
+    /**
+     * 計算途中の分割において点と辺で結ばれた点を反時計回りの順に列挙する.
+     * 外郭の三角形の内部の点なら、これらの点はその点を囲む多角形をなす
+     * @param point 母点
+     * @param neighbor pointと辺で結ばれた点
+     * @return neighborから始まる順序
+     */
+    private List<Point> getLinkPolygon(Point point, Point neighbor){
+        List<Point> list = new ArrayList<>();
+        Point current = neighbor;
+        do {
+            list.add(current);
+            TrianglePair pair = trianglePairs.get(point, current);
+            current = Predicates.orient2d(point, current, pair.point1) > 0 ? pair.point1 : pair.point2;
+        } while ( !current.equals(neighbor) );
+        return list;
+    }
+
+    /**
+     * 分割結果において指定した点と辺で結ばれた点を反時計回りの順に列挙する
+     * @param center 分割の頂点
+     * @param neighbor centerと辺で結ばれた点のひとつ
+     * @return 凸包上の点の場合は凸包の外側を挟んで時計回りの端から順に並ぶ
+     */
+    protected List<Point> getNeighbors(Point center, Point neighbor){
+        LinkedList<Point> list = new LinkedList<>();
+        list.add(neighbor);
+        Point current = rotate(center, neighbor, true);
+        while ( current != null && !current.equals(neighbor) ){
+            list.addLast(current);
+            current = rotate(center, current, true);
+        }
+        if ( current == null ){
+            current = rotate(center, neighbor, false);
+            while ( current != null ){
+                list.addFirst(current);
+                current = rotate(center, current, false);
+            }
         }
+        return list;
+    }
 
-        triangles = null;
-        edges = null;
-        trianglePairs = null;
-        System.out.println("time:" + (System.currentTimeMillis() - time) + "ms");
-    }
-
-    private boolean outside(Triangle next, Triangle container, Polygon.Builder frameBuilder){
-        /*
-        boolean a = next.isVertex(container.a);
-        boolean b = next.isVertex(container.b);
-        boolean c = next.isVertex(container.c);*/
-        int in = 0;
-        int out = 0;
-        Point[] inside = new Point[3];
-        Point[] outside = new Point[3];
-        if ( next.isVertex(container.a) ){
-            outside[out++] = container.a;
-        }else{
-            inside[in++] = container.a;
+    /**
+     * 分割結果において指定した点と辺で結ばれた点との辺を共有する三角形の組を反時計回りの順に列挙する
+     * @param center 分割の頂点
+     * @param neighbor centerと辺で結ばれた点のひとつ
+     * @return 並び順は{@link #getNeighbors(Point, Point)}と同じ
+     */
+    protected List<TrianglePair> getPairsAround(Point center, Point neighbor){
+        ArrayDeque<TrianglePair> list = new ArrayDeque<>();
+        TrianglePair first = solvedPair.get(new Edge(center, neighbor));
+        list.add(first);
+        TrianglePair current = rotate(center, first, true);
+        while ( current != null && !current.getEdge().equals(first.getEdge()) ){
+            list.addLast(current);
+            current = rotate(center, current, true);
         }
-        if ( next.isVertex(container.b) ){
-            outside[out++] = container.b;
-        }else{
-            inside[in++] = container.b;
+        if ( current == null ){
+            current = rotate(center, first, false);
+            while ( current != null ){
+                list.addFirst(current);
+                current = rotate(center, current, false);
+            }
         }
-        if ( next.isVertex(container.c) ){
-            outside[out++] = container.c;
-        }else{
-            inside[in++] = container.c;
-        }
-        if ( out == 1 ){
-            frameBuilder.append(next.getOppositeSize(outside[0]));
-            //trianglePairs.remove(new Edge(outside[0], inside[0]));
-            //trianglePairs.remove(new Edge(outside[0], inside[1]));
-            //trianglePairs.get(new Edge(inside[0], inside[1])).removeTriangle(outside[0]);
-
-            /*if ( a ) frameBuilder.append(next.getOppositeSize(container.a));
-            if ( b ) frameBuilder.append(next.getOppositeSize(container.b));
-            if ( c ) frameBuilder.append(next.getOppositeSize(container.c));*/
-
-            return true;
-        }else if ( out == 2 ){
-            // 一番外側の三角形
-            //trianglePairs.remove(new Edge(outside[1], inside[0]));
-            //trianglePairs.remove(new Edge(outside[0], inside[0]));
-            //trianglePairs.remove(new Edge(outside[0], outside[1]));
-            return true;
-        }else{
-            return false;
+        return new ArrayList<>(list);
+    }
+
+    private TrianglePair rotate(Point center, TrianglePair pair, boolean ccw){
+        Point from = pair.a.equals(center) ? pair.b : pair.a;
+        double v = Predicates.orient2d(center, from, pair.point1);
+        Point to = (ccw ? v > 0 : v < 0) ? pair.point1 : pair.point2;
+        return to == null ? null : solvedPair.get(new Edge(center, to));
+    }
+
+    private Point rotate(Point center, Point from, boolean ccw){
+        TrianglePair pair = solvedPair.get(new Edge(center, from));
+        if ( pair == null ) return null;
+        double v = Predicates.orient2d(center, from, pair.point1);
+        if ( ccw ? v > 0 : v < 0 ) return pair.point1;
+        if ( pair.point2 != null ){
+            v = Predicates.orient2d(center, from, pair.point2);
+            if ( ccw ? v > 0 : v < 0 ) return pair.point2;
         }
+        return null;
     }
 
-    private void normalizeDirection(List<Point> list){
-        final int length = list.size();
-        double sum = 0.0;
-        for ( int i=0 ; i<length ; i++ ){
-            Point previous = list.get((i-1+length)%length);
-            Point current = list.get(i);
-            Point next = list.get((i+1)%length);
-            double ax = current.getX() - previous.getX();
-            double ay = current.getY() - previous.getY();
-            double bx = next.getX() - current.getX();
-            double by = next.getY() - current.getY();
+    /**
+     * 現在の分割に含まれるすべての三角形
+     */
+    private Set<Triangle> collectTriangles(){
+        final Set<Triangle> set = new HashSet<>();
+        trianglePairs.forEach(pair -> {
+            set.add(pair.getTriangle1());
+            if ( pair.point2 != null ) set.add(pair.getTriangle2());
+        });
+        return set;
+    }
+
+    /**
+     * 凸包を求める（monotone chain）
+     * @return 凸包の頂点を反時計回りに並べたリスト. 辺上の点は含まない
+     */
+    private static List<Point> convexHull(Collection<? extends Point> points){
+        Point[] sorted = points.toArray(new Point[0]);
+        Arrays.sort(sorted, Point::compare);
+        final int size = sorted.length;
+        if ( size < 3 ) return new ArrayList<>(Arrays.asList(sorted));
+        Point[] hull = new Point[size * 2];
+        int cnt = 0;
+        // 下側
+        for ( int i=0 ; i<size ; i++ ){
+            while ( cnt >= 2 && Predicates.orient2d(hull[cnt-2], hull[cnt-1], sorted[i]) <= 0 ) cnt--;
+            hull[cnt++] = sorted[i];
+        }
+        // 上側
+        final int lower = cnt + 1;
+        for ( int i=size-2 ; i>=0 ; i-- ){
+            while ( cnt >= lower && Predicates.orient2d(hull[cnt-2], hull[cnt-1], sorted[i]) <= 0 ) cnt--;
+            hull[cnt++] = sorted[i];
+        }
+        return new ArrayList<>(Arrays.asList(hull).subList(0, cnt - 1));
+    }
 
-            //only available in range (-π/2,π/2)
-            //double cross = ax*by - ay*bx;
-            //double argument = Math.atan( cross / (ax*bx + ay*by));
+    /**
+     * 計算途中の分割を母点集合の凸包に沿って張り直す.<br>
+     * 外郭の三角形の頂点を含む三角形をすべて取り除き、残った三角形の外周と凸包の間の凹み（ポケット）を
+     * スタックで走査しながら三角形で埋めたのち、凸包と外郭の三角形の間を改めて分割します.
+     * 母点が外郭の三角形に比べて細長く分布する場合など残った三角形の外周を辿れないときは、
+     * 凸包の内部を{@link FlatTriangulation}で分割し直します
+     * @param hull 凸包の頂点 反時計回り
+     * @param vertices すべての母点
+     * @return 凸包上の点の数（辺上の点を含む）
+     */
+    private int fillHull(List<Point> hull, List<Point> vertices){
+        List<Point> frame = fillPockets(hull);
+        if ( frame == null ){
+            frame = triangulateHull(vertices);
+        }
 
-            double argument = measureArgument(ax, ay, bx, by);
-            sum += argument;
+        // 凸包の辺と外郭の三角形の頂点を結ぶ
+        Point[] outer = {container.a, container.b, container.c};
+        if ( Predicates.orient2d(outer[0], outer[1], outer[2]) < 0 ){
+            outer[1] = container.c;
+            outer[2] = container.b;
         }
-        // sum = ±2π
-        if ( sum < 0 ){
-            Collections.reverse(list);
+        // 外郭の三角形の各辺に最も近い凸包の頂点
+        int[] nearest = new int[3];
+        for ( int k=0 ; k<3 ; k++ ){
+            Point extreme = hull.get(0);
+            double min = Predicates.orient2d(outer[k], outer[(k+1)%3], extreme);
+            for ( Point point : hull ){
+                double v = Predicates.orient2d(outer[k], outer[(k+1)%3], point);
+                if ( v < min ){
+                    min = v;
+                    extreme = point;
+                }
+            }
+            nearest[k] = frame.indexOf(extreme);
+        }
+        final int size = frame.size();
+        for ( int k=0 ; k<3 ; k++ ){
+            Point x = outer[k];
+            Point y = outer[(k+1)%3];
+            for ( int i=nearest[(k+2)%3] ; i!=nearest[k] ; i=(i+1)%size ){
+                Point a = frame.get(i);
+                Point b = frame.get((i+1)%size);
+                attach(a, b, x);
+                attach(b, x, a);
+                attach(x, a, b);
+            }
+            Point w = frame.get(nearest[k]);
+            attach(x, y, w);
+            attach(y, w, x);
+            lastPair = attach(w, x, y);
         }
+        queue.clear();
+        return size;
     }
 
     /**
-     * 2ベクトルA(ax,ay),B(bx,by)のなす角をラジアンで返す.
-     * AからBへ右手系の向きで見た符号つき
-     * @return {@code (-π,+π)}
+     * 残った三角形の外周と凸包の間の凹みを三角形で埋める
+     * @param hull 凸包の頂点 反時計回り
+     * @return 凸包上の点 反時計回り. Null if 残った三角形の外周を辿れない
      */
-    private double measureArgument(double ax, double ay, double bx, double by){
-        double v1 = ax * by - ay * bx;
-        double v2 = ax * bx + ay * by;
-        if ( v2 == 0 ){
-            return v1 > 0 ? Math.PI/2 : -Math.PI/2;
-        }else if ( v2 > 0 ){
-            return Math.atan(v1/v2);
+    private List<Point> fillPockets(List<Point> hull){
+        // 外郭の三角形と接する辺を取り除き、残った三角形の外周を反時計回りに辿れるようにする
+        final Map<Point, Point> next = new HashMap<>();
+        final List<TrianglePair> list = new ArrayList<>(trianglePairs.size());
+        trianglePairs.forEach(list::add);
+        for ( TrianglePair pair : list ){
+            if ( container.isVertex(pair.a) || container.isVertex(pair.b) ){
+                trianglePairs.remove(pair.a, pair.b);
+                continue;
+            }
+            pair.removeBoundary(container);
+            if ( container.isVertex(pair.point1) ){
+                // 両側とも外郭の三角形
+                return null;
+            }
+            if ( pair.point2 == null ){
+                boolean left = Predicates.orient2d(pair.a, pair.b, pair.point1) > 0;
+                Point from = left ? pair.a : pair.b;
+                if ( next.put(from, left ? pair.b : pair.a) != null ){
+                    return null;
+                }
+            }
+        }
+
+        // 凸包の隣り合う頂点の間の外周が凸包の辺上に並ぶまで凹みを埋める
+        final List<Point> frame = new ArrayList<>();
+        final Deque<Point> stack = new ArrayDeque<>();
+        queue.clear();
+        final int length = hull.size();
+        for ( int i=0 ; i<length ; i++ ){
+            Point start = hull.get(i);
+            Point end = hull.get((i+1)%length);
+            stack.clear();
+            stack.push(start);
+            Point current = start;
+            do {
+                current = next.get(current);
+                if ( current == null || frame.size() + stack.size() > next.size() ){
+                    return null;
+                }
+                while ( stack.size() >= 2 ){
+                    Point top = stack.pop();
+                    Point previous = stack.peek();
+                    if ( Predicates.orient2d(previous, top, current) >= 0 ){
+                        stack.push(top);
+                        break;
+                    }
+                    // 凹 外側に三角形を追加する
+                    queue.offer(attach(previous, top, current));
+                    queue.offer(attach(top, current, previous));
+                    queue.offer(attach(current, previous, top));
+                }
+                stack.push(current);
+            } while ( current != end );
+            stack.pop();
+            while ( !stack.isEmpty() ) frame.add(stack.pollLast());
+        }
+        resolveDelaunay();
+        return frame;
+    }
+
+    /**
+     * 外郭の三角形を用いずに凸包の内部を分割し直す
+     * @param vertices すべての母点
+     * @return 凸包上の点 反時計回り
+     */
+    private List<Point> triangulateHull(List<Point> vertices){
+        FlatTriangulation mesh = new FlatTriangulation(vertices);
+        trianglePairs = new EdgeTable(vertices.size() * 3 + 3);
+        queue.clear();
+        final int[] triangles = mesh.getTriangleIndices();
+        for ( int t=0 ; t<triangles.length ; t+=3 ){
+            Point a = mesh.getPoint(triangles[t]);
+            Point b = mesh.getPoint(triangles[t+1]);
+            Point c = mesh.getPoint(triangles[t+2]);
+            attach(a, b, c);
+            attach(b, c, a);
+            attach(c, a, b);
+        }
+        // 凸包は時計回り
+        final int[] hull = mesh.getHull();
+        final List<Point> frame = new ArrayList<>(hull.length);
+        for ( int i=hull.length-1 ; i>=0 ; i-- ){
+            frame.add(mesh.getPoint(hull[i]));
+        }
+        return frame;
+    }
+
+    /**
+     * 辺abの片側に頂点oppositeの三角形を追加する
+     * @return 辺abの三角形の組
+     */
+    private TrianglePair attach(Point a, Point b, Point opposite){
+        TrianglePair pair = trianglePairs.get(a, b);
+        if ( pair == null ){
+            pair = new TrianglePair(new Edge(a, b), opposite);
+            trianglePairs.put(pair);
         }else{
-            double v3 = Math.atan(v1/v2);
-            return v3 > 0 ? v3 - Math.PI : v3 + Math.PI;
+            pair.replace(opposite);
         }
+        return pair;
     }
 
-    private Triangle getContainer(Point point){
-        for ( Triangle item : triangles ){
-            if ( item.containsPoint(point) ){
-                return item;
+    /**
+     * 指定した点を含む三角形を探す.<br>
+     * 最後に生成された三角形から隣接する三角形を辿って点に近づく（remembering stochastic walk）.
+     * 辿れなかった場合のみすべての三角形を走査する
+     * @return 三角形の頂点を保持する{@link #walkVertex}. Null if no such triangle
+     */
+    private Point[] getContainer(Point point){
+        if ( walk(point) ) return walkVertex;
+        metrics.locationFallbacks++;
+        for ( Triangle item : collectTriangles() ){
+            if ( contains(item.a, item.b, item.c, point) ){
+                walkVertex[0] = item.a;
+                walkVertex[1] = item.b;
+                walkVertex[2] = item.c;
+                return walkVertex;
             }
         }
         return null;
     }
 
-    private void addPointOutside(Point a, Point b, Point c){
-        edges.clear();
+    /**
+     * @return 見つかった場合は{@link #walkVertex}に三角形の頂点が入る
+     */
+    private boolean walk(Point point){
+        TrianglePair start = lastPair;
+        if ( start == null || trianglePairs.get(start.a, start.b) != start ) return false;
+        final Point[] vertex = walkVertex;
+        vertex[0] = start.a;
+        vertex[1] = start.b;
+        vertex[2] = start.point1;
+        final int limit = trianglePairs.size();
+        Point entered = null;
+        for ( int step=0 ; step<limit ; step++ ){
+            metrics.locationSteps++;
+            int offset = random.nextInt(3);
+            int crossed = -1;
+            for ( int k=0 ; k<3 ; k++ ){
+                int i = (offset + k) % 3;
+                Point opposite = vertex[i];
+                // 直前に通過した辺は調べない
+                if ( opposite == entered ) continue;
+                Point u = vertex[(i+1)%3];
+                Point w = vertex[(i+2)%3];
+                if ( Predicates.orient2d(u, w, point) * Predicates.orient2d(u, w, opposite) < 0 ){
+                    TrianglePair pair = trianglePairs.get(u, w);
+                    if ( pair == null ) return false;
+                    entered = pair.getOpposite(opposite);
+                    // 外郭の外側へは辿れない
+                    if ( entered == null ) return false;
+                    crossed = i;
+                    break;
+                }
+            }
+            if ( crossed < 0 ){
+                // どの辺も越えない = 三角形の内部・辺上・頂点上
+                return contains(vertex[0], vertex[1], vertex[2], point);
+            }
+            vertex[crossed] = entered;
+        }
+        return false;
+    }
 
-        Edge ab = new Edge(a, b);
-        Edge bc = new Edge(b, c);
-        Edge ac = new Edge(a, c);
+    /**
+     * 三角形の内部・辺上・頂点上に点が含まれるか厳密に判定する.
+     * {@link Triangle#containsPoint(Point)}と異なり{@link Setting#error}の誤差を許容しない
+     */
+    private static boolean contains(Point a, Point b, Point c, Point p){
+        double v1 = Predicates.orient2d(a, b, p);
+        double v2 = Predicates.orient2d(b, c, p);
+        double v3 = Predicates.orient2d(c, a, p);
+        return ( v1 >= 0 && v2 >= 0 && v3 >= 0 ) || ( v1 <= 0 && v2 <= 0 && v3 <= 0 );
+    }
 
-        trianglePairs.get(ab).replace(c);
-        trianglePairs.get(bc).replace(a);
-        trianglePairs.put(ac, new TrianglePair(ac, b));
-        triangles.add(new Triangle(a, b, c));
-        edges.offer(ab);
-        edges.offer(bc);
+    /**
+     * 線分上に点があるか厳密に判定する
+     * @see Edge#onEdge(Point, Point, Point)
+     */
+    private static boolean onEdge(Point start, Point end, Point p){
+        return Predicates.orient2d(start, end, p) == 0 &&
+                (start.getX() - p.getX()) * (end.getX() - p.getX()) + (start.getY() - p.getY()) * (end.getY() - p.getY()) <= 0;
+    }
+
+    /**
+     * 外郭の凹んだ頂点bの外側にある辺（bと外郭の三角形の頂点を結ぶ辺）をフリップして三角形abcを生成する.
+     * 外郭の三角形を含む分割全体の整合性は保たれる
+     */
+    private void addPointOutside(Point a, Point b, Point c){
+        queue.clear();
+
+        Point[] outer = {container.a, container.b, container.c};
+        boolean progress = true;
+        while ( progress && trianglePairs.get(a, c) == null ){
+            progress = false;
+            for ( Point x : outer ){
+                TrianglePair pair = trianglePairs.get(b, x);
+                if ( pair != null && pair.canFlip() ){
+                    flip(pair);
+                    progress = true;
+                }
+            }
+        }
+        queue.clear();
+        if ( trianglePairs.get(a, c) == null ) return;
+        queue.offer(trianglePairs.get(a, b));
+        queue.offer(trianglePairs.get(b, c));
 
         resolveDelaunay();
     }
 
     private void resolveDelaunay(){
-        while( !edges.isEmpty() ){
-            Edge edge = edges.poll();
-            TrianglePair pair = trianglePairs.get(edge);
-            if ( pair.isFlip() ){
-                trianglePairs.remove(edge);
-                triangles.remove(pair.t1);
-                triangles.remove(pair.t2);
-                pair.flip();
-                trianglePairs.put(pair.edge, pair);
-                triangles.add(pair.t1);
-                triangles.add(pair.t2);
-                Edge a1 = new Edge(pair.point1, pair.edge.a);
-                Edge b1 = new Edge(pair.point1, pair.edge.b);
-                Edge a2 = new Edge(pair.point2, pair.edge.a);
-                Edge b2 = new Edge(pair.point2, pair.edge.b);
-                edges.offer(a1);
-                edges.offer(b1);
-                edges.offer(a2);
-                edges.offer(b2);
-                trianglePairs.get(a1).replace(pair.edge.b);
-                trianglePairs.get(b1).replace(pair.edge.a);
-                trianglePairs.get(a2).replace(pair.edge.b);
-                trianglePairs.get(b2).replace(pair.edge.a);
-            }
-        }
-    }
-
-    private void addPoint(Point p, Triangle t){
-
-        edges.clear();
-
-        if ( t.isVertex(p) ){
+        while( !queue.isEmpty() ){
+            TrianglePair pair = queue.poll();
+            if ( pair.isFlip() && !isHullEdge(pair) ){
+                flip(pair);
+            }
+        }
+    }
+
+    /**
+     * 母点同士を結ぶ辺で、片側が外郭の三角形の頂点を含む三角形か判定する.<br>
+     * 外郭の三角形の頂点は十分遠方にあるとみなし、このような辺はフリップしない.
+     * さもないと外郭の頂点と結ぶ辺に置き換わり母点集合の凸包が凹む
+     */
+    private boolean isHullEdge(TrianglePair pair){
+        return !container.isVertex(pair.a) && !container.isVertex(pair.b) &&
+                ( container.isVertex(pair.point1) || container.isVertex(pair.point2) );
+    }
+
+    /**
+     * 辺をフリップして周囲の4辺を検査待ちに追加する
+     */
+    private void flip(TrianglePair pair){
+        metrics.flips++;
+        trianglePairs.remove(pair.a, pair.b);
+        onRemoved(pair.a, pair.b);
+        pair.flip();
+        trianglePairs.put(pair);
+        onChanged(pair);
+        lastPair = pair;
+        TrianglePair a1 = trianglePairs.get(pair.point1, pair.a);
+        TrianglePair b1 = trianglePairs.get(pair.point1, pair.b);
+        TrianglePair a2 = trianglePairs.get(pair.point2, pair.a);
+        TrianglePair b2 = trianglePairs.get(pair.point2, pair.b);
+        a1.replace(pair.b);
+        b1.replace(pair.a);
+        a2.replace(pair.b);
+        b2.replace(pair.a);
+        onChanged(a1);
+        onChanged(b1);
+        onChanged(a2);
+        onChanged(b2);
+        queue.offer(a1);
+        queue.offer(b1);
+        queue.offer(a2);
+        queue.offer(b2);
+    }
+
+    private void onChanged(TrianglePair pair){
+        if ( changedPairs != null ) changedPairs.add(pair);
+    }
+
+    private void onRemoved(Point a, Point b){
+        if ( removedEdges != null ) removedEdges.add(new Edge(a, b));
+    }
+
+    /**
+     * 三角形abcに含まれる点pを追加する
+     */
+    private void addPoint(Point p, Point a, Point b, Point c){
+
+        queue.clear();
+
+        if ( p.equals(a) || p.equals(b) || p.equals(c) ){
             //頂点に一致する場合はnothing to do
             return;
-        }else if ( Edge.onEdge(t.a, t.b, p) ){
-            addOnEdge(t.a, t.b, t.c, p);
-        }else if ( Edge.onEdge(t.b, t.c, p) ){
-            addOnEdge(t.b, t.c, t.a, p);
-        }else if ( Edge.onEdge(t.c, t.a, p) ){
-            addOnEdge(t.c, t.a, t.b, p);
+        }else if ( onEdge(a, b, p) ){
+            addOnEdge(a, b, c, p);
+        }else if ( onEdge(b, c, p) ){
+            addOnEdge(b, c, a, p);
+        }else if ( onEdge(c, a, p) ){
+            addOnEdge(c, a, b, p);
         }else{
-            addInTriangle(p, t);
+            addInTriangle(p, a, b, c);
         }
+        metrics.pointsInserted++;
 
         resolveDelaunay();
 
@@ -431,66 +1415,66 @@ public class DelaunayDiagram {
 
     //△ABCの辺AB上に点P
     private void addOnEdge(Point a, Point b, Point c, Point p){
-        Edge old = new Edge(a, b);
-        TrianglePair pair = trianglePairs.remove(old);
-        Point d = new Line(old).onSameSide(p, pair.point1) ? pair.point2 : pair.point1;
-
-        triangles.remove(pair.t1);
-        triangles.remove(pair.t2);
-        Edge pc = new Edge(p, c);
-        Edge pd = new Edge(p, d);
-        Edge pa = new Edge(p, a);
-        Edge pb = new Edge(p, b);
-        TrianglePair innerPair = new TrianglePair(pc, a, b);
-        TrianglePair outerPair = new TrianglePair(pd, a, b);
-        triangles.add(innerPair.t1);
-        triangles.add(innerPair.t2);
-        triangles.add(outerPair.t1);
-        triangles.add(outerPair.t2);
-        trianglePairs.put(pc, innerPair);
-        trianglePairs.put(pd, outerPair);
-        trianglePairs.put(pa, new TrianglePair(pa, d, c));
-        trianglePairs.put(pb, new TrianglePair(pb, d, c));
-
-        Edge ac = new Edge(a, c);
-        Edge bc = new Edge(b, c);
-        Edge ad = new Edge(a, d);
-        Edge bd = new Edge(b, d);
-        trianglePairs.get(ac).replace(p);
-        trianglePairs.get(bc).replace(p);
-        trianglePairs.get(ad).replace(p);
-        trianglePairs.get(bd).replace(p);
-        edges.offer(ac);
-        edges.offer(bc);
-        edges.offer(ad);
-        edges.offer(bd);
-    }
-
-    private void addInTriangle(Point p, Triangle t){
-
-        triangles.remove(t);
-        Edge ab = new Edge(t.a, t.b);
-        Edge bc = new Edge(t.b, t.c);
-        Edge ca = new Edge(t.c, t.a);
-
-        trianglePairs.get(ab).replace(p);
-        trianglePairs.get(bc).replace(p);
-        trianglePairs.get(ca).replace(p);
-        Edge pa = new Edge(p, t.a);
-        Edge pb = new Edge(p, t.b);
-        Edge pc = new Edge(p, t.c);
-        TrianglePair ta = new TrianglePair(pa, t.c, t.b);
-        TrianglePair tb = new TrianglePair(pb, t.a, t.c);
-        TrianglePair tc = new TrianglePair(pc, t.b, t.a);
-        trianglePairs.put(pa, ta);
-        trianglePairs.put(pb, tb);
-        trianglePairs.put(pc, tc);
-        triangles.add(ta.t1);
-        triangles.add(tb.t1);
-        triangles.add(tc.t1);
-        edges.offer(ab);
-        edges.offer(bc);
-        edges.offer(ca);
+        TrianglePair pair = trianglePairs.remove(a, b);
+        onRemoved(a, b);
+        Point d = pair.getOpposite(c);
+
+        TrianglePair innerPair = new TrianglePair(p, c, a, b);
+        TrianglePair outerPair = new TrianglePair(p, d, a, b);
+        TrianglePair pa = new TrianglePair(p, a, d, c);
+        TrianglePair pb = new TrianglePair(p, b, d, c);
+        trianglePairs.put(innerPair);
+        trianglePairs.put(outerPair);
+        trianglePairs.put(pa);
+        trianglePairs.put(pb);
+        onChanged(innerPair);
+        onChanged(outerPair);
+        onChanged(pa);
+        onChanged(pb);
+        lastPair = outerPair;
+
+        TrianglePair ac = trianglePairs.get(a, c);
+        TrianglePair bc = trianglePairs.get(b, c);
+        TrianglePair ad = trianglePairs.get(a, d);
+        TrianglePair bd = trianglePairs.get(b, d);
+        ac.replace(p);
+        bc.replace(p);
+        ad.replace(p);
+        bd.replace(p);
+        onChanged(ac);
+        onChanged(bc);
+        onChanged(ad);
+        onChanged(bd);
+        queue.offer(ac);
+        queue.offer(bc);
+        queue.offer(ad);
+        queue.offer(bd);
+    }
+
+    private void addInTriangle(Point p, Point a, Point b, Point c){
+
+        TrianglePair ab = trianglePairs.get(a, b);
+        TrianglePair bc = trianglePairs.get(b, c);
+        TrianglePair ca = trianglePairs.get(c, a);
+        ab.replace(p);
+        bc.replace(p);
+        ca.replace(p);
+        TrianglePair ta = new TrianglePair(p, a, c, b);
+        TrianglePair tb = new TrianglePair(p, b, a, c);
+        TrianglePair tc = new TrianglePair(p, c, b, a);
+        trianglePairs.put(ta);
+        trianglePairs.put(tb);
+        trianglePairs.put(tc);
+        onChanged(ab);
+        onChanged(bc);
+        onChanged(ca);
+        onChanged(ta);
+        onChanged(tb);
+        onChanged(tc);
+        lastPair = tc;
+        queue.offer(ab);
+        queue.offer(bc);
+        queue.offer(ca);
     }
 
 
@@ -0,0 +1,173 @@
+package jp.seo.diagram.core;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * 図の計算の進捗と計測値を受け取る.<br>
+ * 何もしないデフォルト実装を持つので必要なメソッドのみ実装すればよい.
+ * 進捗の通知は間引かれるので、各段階でおよそ100回以下しか呼ばれません
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+public interface DiagramListener {
+
+    /**
+     * 何もしないリスナー
+     */
+    DiagramListener NONE = new DiagramListener() {};
+
+    /**
+     * 計算の段階
+     */
+    enum Phase {
+        /**
+         * 母点を追加して三角形分割する
+         */
+        TRIANGULATION,
+        /**
+         * 外郭の凹みを埋める
+         */
+        HULL,
+        /**
+         * 三角形・辺・三角形の組の集合を取り出す
+         */
+        EXTRACTION,
+        /**
+         * ボロノイ図の辺を計算して矩形で切り取る
+         */
+        VORONOI_EDGES,
+        /**
+         * ボロノイ領域の多角形を閉じる
+         */
+        VORONOI_AREAS,
+        /**
+         * 高次ボロノイ図で二等分線を追加する. 別スレッドから通知される
+         */
+        BISECTOR_EXTENSION
+    }
+
+    /**
+     * 進捗を通知する
+     * @param phase 計算中の段階
+     * @param done 処理済みの個数
+     * @param total 処理する総数
+     */
+    default void onProgress(Phase phase, int done, int total){}
+
+    /**
+     * 段階の終了を通知する
+     * @param phase 終了した段階
+     * @param count 処理した個数
+     * @param elapsedNanos 経過時間(ns)
+     */
+    default void onPhaseCompleted(Phase phase, int count, long elapsedNanos){}
+
+    /**
+     * 計算全体の終了を通知する
+     * @param metrics 計算中に集計した値
+     */
+    default void onCompleted(Metrics metrics){}
+
+    /**
+     * 進捗を指定した出力先へ表示するリスナーを取得する
+     * @param out 出力先
+     * @return Non Null
+     */
+    static DiagramListener printTo(PrintStream out){
+        return new DiagramListener() {
+            @Override
+            public void onProgress(Phase phase, int done, int total) {
+                out.print(String.format(Locale.US, "\r%s %.2f%% complete  ", phase, (double)done * 100 / total));
+            }
+
+            @Override
+            public void onPhaseCompleted(Phase phase, int count, long elapsedNanos) {
+                out.println(String.format(Locale.US, "\r%s > size:%d time:%dms", phase, count, elapsedNanos / 1000000));
+            }
+
+            @Override
+            public void onCompleted(Metrics metrics) {
+                out.println(metrics.toString());
+            }
+        };
+    }
+
+    /**
+     * 計算中に集計した値.<br>
+     * {@link DelaunayDiagram#split(Rectangle)}の度に初期化され、
+     * その後の{@link DelaunayDiagram#insert(Point)}・{@link DelaunayDiagram#remove(Point)}の分も加算されます
+     */
+    final class Metrics {
+
+        Metrics(){
+            durations = new long[Phase.values().length];
+        }
+
+        int pointsInserted;
+        int flips;
+        long locationSteps;
+        int locationFallbacks;
+        int openAreas;
+        final long[] durations;
+
+        /**
+         * @return 分割に追加した母点の数
+         */
+        public int getPointsInserted(){
+            return pointsInserted;
+        }
+
+        /**
+         * @return 辺をフリップした回数
+         */
+        public int getFlips(){
+            return flips;
+        }
+
+        /**
+         * @return 点を含む三角形を探すために隣接する三角形を辿った回数の合計
+         */
+        public long getLocationSteps(){
+            return locationSteps;
+        }
+
+        /**
+         * @return 隣接する三角形を辿れずにすべての三角形を走査した回数
+         */
+        public int getLocationFallbacks(){
+            return locationFallbacks;
+        }
+
+        /**
+         * @return 矩形で切り取られたボロノイ領域の数. 矩形が無ければ閉じない領域
+         * @see VoronoiDiagram.VoronoiArea#clipped
+         */
+        public int getOpenAreas(){
+            return openAreas;
+        }
+
+        /**
+         * @return 指定した段階に要した時間の合計(ns)
+         */
+        public long getDuration(Phase phase){
+            return durations[phase.ordinal()];
+        }
+
+        @Override
+        public String toString(){
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format(Locale.US,
+                    "Metrics{points:%d, flips:%d, locationSteps:%d, fallbacks:%d, openAreas:%d",
+                    pointsInserted, flips, locationSteps, locationFallbacks, openAreas));
+            for ( Phase phase : Phase.values() ){
+                long duration = durations[phase.ordinal()];
+                if ( duration > 0 ){
+                    builder.append(String.format(Locale.US, ", %s:%dms", phase, duration / 1000000));
+                }
+            }
+            return builder.append('}').toString();
+        }
+    }
+
+}
@@ -0,0 +1,380 @@
+package jp.seo.diagram.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * 分割結果のバイナリ形式のスナップショット.<br>
+ * {@link #write(DelaunayDiagram, Path)}で頂点の座標値・三角形の頂点index・隣接関係（半辺）・凸包と、
+ * {@link VoronoiDiagram}ならボロノイ領域の頂点列をファイルに書き出し、
+ * {@link #load(Path)}で{@link FileChannel#map(FileChannel.MapMode, long, long)}により読み込みます.
+ * 読み込み時は要素ごとのオブジェクトを生成せず、各値はマップされたバッファから直接参照します.
+ * <p>
+ * 形式（リトルエンディアン）：ヘッダ{@value #HEADER_SIZE}バイトの後に
+ * 座標値 {@code double[2n]}、三角形 {@code int[3t]}、半辺 {@code int[3t]}、凸包 {@code int[h]}、
+ * ボロノイ領域を含む場合はさらに 各領域の開始位置 {@code int[n+1]}、矩形で切り取られているか {@code byte[n]}、
+ * 領域の頂点の座標値 {@code double[2m]}が続く. 各区画は8バイト境界に揃える.
+ * 三角形と凸包の頂点は{@link FlatTriangulation}と同じく時計回りに並ぶ
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+public final class DiagramSnapshot {
+
+    private static final int MAGIC = 0x44534A50; // "PJSD"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int FLAG_CELLS = 1;
+
+    private DiagramSnapshot(FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+        if ( fileSize < HEADER_SIZE ){
+            throw new IOException("not a diagram snapshot");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while ( header.hasRemaining() ){
+            if ( channel.read(header, header.position()) < 0 ) throw new IOException("not a diagram snapshot");
+        }
+        if ( header.getInt(0) != MAGIC ){
+            throw new IOException("not a diagram snapshot");
+        }
+        int version = header.getInt(4);
+        if ( version != VERSION ){
+            throw new IOException("unsupported snapshot version : " + version);
+        }
+        int flags = header.getInt(8);
+        pointSize = header.getInt(12);
+        triangleSize = header.getInt(16);
+        hullSize = header.getInt(20);
+        int cellVertexSize = header.getInt(24);
+        boolean cells = (flags & FLAG_CELLS) != 0;
+        if ( pointSize < 0 || triangleSize < 0 || hullSize < 0 || cellVertexSize < 0 ){
+            throw new IOException(String.format(Locale.US,
+                    "invalid snapshot header : points=%d, triangles=%d, hull=%d, cell vertices=%d",
+                    pointSize, triangleSize, hullSize, cellVertexSize));
+        }
+        long expected = sizeOf(pointSize, triangleSize, hullSize, cells ? cellVertexSize : -1);
+        if ( expected > fileSize ){
+            throw new IOException(String.format(Locale.US,
+                    "snapshot truncated : %d bytes required for points=%d, triangles=%d, hull=%d, cell vertices=%d but file has %d bytes",
+                    expected, pointSize, triangleSize, hullSize, cellVertexSize, fileSize));
+        }
+        // 区画ごとにマップするので2GBを超えるファイルも読み込める
+        long position = HEADER_SIZE;
+        coords = map(channel, position, pointSize * 16L).asDoubleBuffer();
+        position += pointSize * 16L;
+        triangles = map(channel, position, triangleSize * 12L).asIntBuffer();
+        position += triangleSize * 12L;
+        halfedges = map(channel, position, triangleSize * 12L).asIntBuffer();
+        position += triangleSize * 12L;
+        hull = map(channel, position, hullSize * 4L).asIntBuffer();
+        position = align(position + hullSize * 4L);
+        if ( cells ){
+            cellOffsets = map(channel, position, (pointSize + 1) * 4L).asIntBuffer();
+            position += (pointSize + 1) * 4L;
+            cellClipped = map(channel, position, pointSize);
+            position = align(position + pointSize);
+            cellCoords = map(channel, position, cellVertexSize * 16L).asDoubleBuffer();
+            if ( cellOffsets.get(pointSize) != cellVertexSize ){
+                throw new IOException(String.format(Locale.US,
+                        "invalid snapshot cells : %d cell vertices in header but offsets end at %d",
+                        cellVertexSize, cellOffsets.get(pointSize)));
+            }
+        }else{
+            cellOffsets = null;
+            cellClipped = null;
+            cellCoords = null;
+        }
+    }
+
+    private final int pointSize, triangleSize, hullSize;
+    private final DoubleBuffer coords;
+    private final IntBuffer triangles, halfedges, hull;
+    private final IntBuffer cellOffsets;
+    private final ByteBuffer cellClipped;
+    private final DoubleBuffer cellCoords;
+
+    /**
+     * スナップショットを読み込む.<br>
+     * ファイルはメモリにマップされ、ページは参照した時点で読み込まれます
+     * @param file {@link #write(DelaunayDiagram, Path)}で書き出したファイル
+     * @throws IOException 読み込めない、または形式が異なる・ヘッダの要素数に対してファイルが短い場合
+     */
+    public static DiagramSnapshot load(Path file) throws IOException {
+        try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ) ){
+            return new DiagramSnapshot(channel);
+        }
+    }
+
+    /**
+     * 分割結果をスナップショットとして書き出す.<br>
+     * 固定長のバッファを介して少しずつ書き出すので、スナップショット全体をメモリ上に構築しません
+     * @param diagram 分割済みの図. {@link VoronoiDiagram}ならボロノイ領域も書き出す
+     * @param file 書き出し先 既存のファイルは置き換える
+     * @throws IllegalStateException 分割を計算していない場合
+     */
+    public static void write(DelaunayDiagram diagram, Path file) throws IOException {
+        Set<Triangle> solved = diagram.getTriangles();
+        if ( solved == null ){
+            throw new IllegalStateException("not split yet");
+        }
+        final FlatTriangulation flat = FlatTriangulation.of(solved);
+        final int n = flat.getPointSize();
+        final List<Point> points = new ArrayList<>(n);
+        for ( int i=0 ; i<n ; i++ ) points.add(flat.getPoint(i));
+        final int[] triangles = flat.getTriangleIndices();
+        final int[] halfedges = flat.getHalfEdges();
+        final int[] hull = flat.getHull();
+        // ボロノイ領域
+        final VoronoiDiagram voronoi = diagram instanceof VoronoiDiagram ? (VoronoiDiagram)diagram : null;
+        long cellVertexSize = 0;
+        if ( voronoi != null ){
+            for ( Point p : points ){
+                VoronoiDiagram.VoronoiArea area = voronoi.getVoronoiArea(p);
+                if ( area != null ) cellVertexSize += area.points.length;
+            }
+            if ( cellVertexSize * 16 > Integer.MAX_VALUE ){
+                throw new IOException("too many cell vertices for a snapshot : " + cellVertexSize);
+            }
+        }
+
+        final long size = sizeOf(n, triangles.length / 3, hull.length, voronoi != null ? cellVertexSize : -1);
+        try ( Output out = new Output(file) ){
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(voronoi != null ? FLAG_CELLS : 0);
+            out.putInt(n);
+            out.putInt(triangles.length / 3);
+            out.putInt(hull.length);
+            out.putInt((int)cellVertexSize);
+            out.putInt(0);
+            for ( Point p : points ){
+                out.putDouble(p.getX());
+                out.putDouble(p.getY());
+            }
+            for ( int value : triangles ) out.putInt(value);
+            for ( int value : halfedges ) out.putInt(value);
+            for ( int value : hull ) out.putInt(value);
+            out.align();
+            if ( voronoi != null ){
+                int offset = 0;
+                out.putInt(offset);
+                for ( Point p : points ){
+                    VoronoiDiagram.VoronoiArea area = voronoi.getVoronoiArea(p);
+                    if ( area != null ) offset += area.points.length;
+                    out.putInt(offset);
+                }
+                for ( Point p : points ){
+                    VoronoiDiagram.VoronoiArea area = voronoi.getVoronoiArea(p);
+                    out.put((byte)(area != null && area.clipped ? 1 : 0));
+                }
+                out.align();
+                for ( Point p : points ){
+                    VoronoiDiagram.VoronoiArea area = voronoi.getVoronoiArea(p);
+                    if ( area == null ) continue;
+                    for ( Point q : area.points ){
+                        out.putDouble(q.getX());
+                        out.putDouble(q.getY());
+                    }
+                }
+            }
+            if ( out.position != size ){
+                throw new IllegalStateException(String.format(Locale.US, "snapshot size mismatch : %d != %d", out.position, size));
+            }
+        }
+    }
+
+    /**
+     * 書き出す際に用いるバッファの大きさ
+     */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    /**
+     * 固定長のバッファに書き込み、一杯になる度にファイルへ書き出す
+     */
+    private static final class Output implements Closeable {
+
+        Output(Path file) throws IOException {
+            channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        /* 書き込んだバイト数 */
+        private long position;
+
+        void putInt(int value) throws IOException {
+            if ( buffer.remaining() < 4 ) flush();
+            buffer.putInt(value);
+            position += 4;
+        }
+
+        void putDouble(double value) throws IOException {
+            if ( buffer.remaining() < 8 ) flush();
+            buffer.putDouble(value);
+            position += 8;
+        }
+
+        void put(byte value) throws IOException {
+            if ( !buffer.hasRemaining() ) flush();
+            buffer.put(value);
+            position++;
+        }
+
+        /**
+         * 8バイト境界まで0で埋める
+         */
+        void align() throws IOException {
+            while ( (position & 7) != 0 ) put((byte)0);
+        }
+
+        /* Java 8 で実行できるように Buffer として呼び出す */
+        private void flush() throws IOException {
+            ((Buffer)buffer).flip();
+            while ( buffer.hasRemaining() ) channel.write(buffer);
+            ((Buffer)buffer).clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * ファイル全体の大きさ
+     * @param cellVertexSize ボロノイ領域の頂点の数. 負数ならボロノイ領域を含まない
+     */
+    private static long sizeOf(int pointSize, int triangleSize, int hullSize, long cellVertexSize){
+        long size = align(HEADER_SIZE + pointSize * 16L + triangleSize * 24L + hullSize * 4L);
+        if ( cellVertexSize >= 0 ){
+            size += align((pointSize + 1) * 4L + pointSize) + cellVertexSize * 16;
+        }
+        return size;
+    }
+
+    private static long align(long position){
+        return (position + 7) & ~7L;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        if ( length > Integer.MAX_VALUE ){
+            throw new IOException("snapshot section too large to map : " + length + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int getPointSize(){
+        return pointSize;
+    }
+
+    public int getTriangleSize(){
+        return triangleSize;
+    }
+
+    public double getX(int index){
+        return coords.get(2 * index);
+    }
+
+    public double getY(int index){
+        return coords.get(2 * index + 1);
+    }
+
+    /**
+     * 指定したindexの頂点. 呼び出す度に生成する
+     */
+    public Point getPoint(int index){
+        return new BasePoint(getX(index), getY(index));
+    }
+
+    /**
+     * 半辺の始点
+     * @param e 半辺のindex 三角形tの半辺は{@code 3t, 3t+1, 3t+2}
+     * @return 頂点のindex
+     */
+    public int getVertex(int e){
+        return triangles.get(e);
+    }
+
+    /**
+     * 半辺と対をなす半辺
+     * @return 凸包上の辺なら-1
+     */
+    public int getHalfEdge(int e){
+        return halfedges.get(e);
+    }
+
+    public int getHullSize(){
+        return hullSize;
+    }
+
+    /**
+     * 凸包をなす頂点. 時計回り
+     * @return 頂点のindex
+     */
+    public int getHull(int i){
+        return hull.get(i);
+    }
+
+    /**
+     * @return ボロノイ領域を含むならtrue
+     */
+    public boolean hasCells(){
+        return cellOffsets != null;
+    }
+
+    /**
+     * 母点のボロノイ領域の頂点の数
+     * @param site 頂点のindex
+     * @return 矩形の外側にある領域なら0
+     */
+    public int getCellSize(int site){
+        return cellOffsets.get(site + 1) - cellOffsets.get(site);
+    }
+
+    public double getCellX(int site, int k){
+        return cellCoords.get(2 * (cellOffsets.get(site) + k));
+    }
+
+    public double getCellY(int site, int k){
+        return cellCoords.get(2 * (cellOffsets.get(site) + k) + 1);
+    }
+
+    /**
+     * @see VoronoiDiagram.VoronoiArea#clipped
+     */
+    public boolean isCellClipped(int site){
+        return cellClipped.get(site) != 0;
+    }
+
+    /**
+     * 分割を{@link FlatTriangulation}として取得する.
+     * 配列は一括でコピーする
+     */
+    public FlatTriangulation toTriangulation(){
+        double[] coords = new double[pointSize * 2];
+        int[] triangles = new int[triangleSize * 3];
+        int[] halfedges = new int[triangleSize * 3];
+        int[] hull = new int[hullSize];
+        this.coords.duplicate().get(coords);
+        this.triangles.duplicate().get(triangles);
+        this.halfedges.duplicate().get(halfedges);
+        this.hull.duplicate().get(hull);
+        return new FlatTriangulation(coords, null, triangles, halfedges, hull);
+    }
+
+}
@@ -0,0 +1,35 @@
+package jp.seo.diagram.core;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 分割結果を集合として保持せずに、計算された順に受け取る.<br>
+ * {@link DelaunayDiagram#split(Rectangle, DiagramVisitor)}で指定すると、
+ * 三角形・辺の集合やボロノイ領域のマップを生成しないので少ないメモリで計算できます.
+ * 何もしないデフォルト実装を持つので必要なメソッドのみ実装すればよい
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+public interface DiagramVisitor {
+
+    /**
+     * 分割された三角形を受け取る. 各三角形はちょうど一度ずつ渡される
+     * @param triangle 外郭の三角形の頂点を含まない三角形
+     */
+    default void visitTriangle(Triangle triangle){}
+
+    /**
+     * 分割された三角形の辺を受け取る. 各辺はちょうど一度ずつ渡される
+     * @param edge 辺
+     * @param triangle1 辺を共有する三角形
+     * @param triangle2 辺を共有するもう一方の三角形 凸包上の辺ならNull
+     */
+    default void visitEdge(Edge edge, Triangle triangle1, @Nullable Triangle triangle2){}
+
+    /**
+     * 計算が完了したボロノイ領域を受け取る. {@link VoronoiDiagram}のみ呼び出す
+     * @param area 各母点の領域. 矩形の外側にある領域は渡されない
+     */
+    default void visitVoronoiArea(VoronoiDiagram.VoronoiArea area){}
+
+}
@@ -0,0 +1,401 @@
+package jp.seo.diagram.core;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 分割統治法によるドロネー分割.<br>
+ * x座標でソートした点集合を再帰的に二分し、それぞれの分割結果を併合します.
+ * 二分したそれぞれの計算は独立しているので{@link ForkJoinPool}で並列に計算します.
+ * 結果は{@link FlatTriangulation}と同じ配列形式に変換して返します
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+final class DivideAndConquer {
+
+    //base algorithm is retrieved from
+    //L. Guibas and J. Stolfi, "Primitives for the manipulation of general subdivisions
+    // and the computation of Voronoi diagrams", ACM Transactions on Graphics, 1985
+
+    /**
+     * 分割を計算する
+     * @param points 重複のない点の集合
+     * @param parallelism 並列数. 1以下なら並列化しない
+     * @param threshold この個数以下の点集合は分割せず逐次的に計算する
+     */
+    static FlatTriangulation triangulate(List<? extends Point> points, int parallelism, int threshold){
+        final int n = points.size();
+        double[] coords = new double[n * 2];
+        for ( int i=0 ; i<n ; i++ ){
+            Point p = points.get(i);
+            coords[2*i] = p.getX();
+            coords[2*i+1] = p.getY();
+        }
+        DivideAndConquer solver = new DivideAndConquer(coords, Math.max(threshold, 3));
+        if ( parallelism > 1 ){
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(solver.new Task(0, solver.order.length));
+            } finally {
+                pool.shutdown();
+            }
+        }else{
+            solver.solve(0, solver.order.length, false);
+        }
+        return solver.build(points.toArray(new Point[0]));
+    }
+
+    private DivideAndConquer(double[] coords, int threshold){
+        this.coords = coords;
+        this.threshold = threshold;
+        this.order = sortUnique(coords);
+        // 各点集合 order[from, to) は辺の組 [3*from, 3*to) を割り当てられ、その範囲内でのみ辺を生成・破棄する.
+        // 平面グラフの辺の数は 3k-6 未満なので不足しない
+        final int size = 3 * order.length;
+        onext = new int[size * 4];
+        org = new int[size * 2];
+    }
+
+    private final double[] coords;
+    private final int threshold;
+    /* x座標（同じならy座標）の昇順に並べた重複のない頂点index */
+    private final int[] order;
+    /* 凸包上の辺 {最左の点から出る反時計回りの辺, 最右の点から出る時計回りの辺} */
+    private int[] hullEdge;
+
+    /*
+     * 有向辺は4つで一組の辺（双対辺を含む）を表現する.
+     * 辺の組qの有向辺 e = 4q + r (r=0,1,2,3) をそれぞれ e.rot の順に並べ、
+     * 有向辺ごとの onext と、双対でない有向辺 (r=0,2) の始点の頂点index org[e/2] を配列に詰めて保持する.
+     * 使われていない辺の組は onext[4q] で次の空きを指す連結リストにつなぐ
+     */
+    private final int[] onext;
+    private final int[] org;
+
+    private static int[] sortUnique(double[] coords){
+        final int n = coords.length >> 1;
+        int[] ids = new int[n];
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for ( int i=0 ; i<n ; i++ ){
+            ids[i] = i;
+            xs[i] = coords[2*i];
+            ys[i] = coords[2*i+1];
+        }
+        if ( n == 0 ) return ids;
+        FlatTriangulation.quicksort(ids, xs, 0, n-1);
+        // x座標が同じ範囲をy座標で並べ替える
+        for ( int start=0, end ; start<n ; start=end ){
+            for ( end=start+1 ; end<n && xs[ids[end]] == xs[ids[start]] ; end++ );
+            if ( end - start > 1 ) FlatTriangulation.quicksort(ids, ys, start, end-1);
+        }
+        int size = 0;
+        for ( int i=0 ; i<n ; i++ ){
+            int id = ids[i];
+            if ( size > 0 && xs[ids[size-1]] == xs[id] && ys[ids[size-1]] == ys[id] ) continue;
+            ids[size++] = id;
+        }
+        return Arrays.copyOf(ids, size);
+    }
+
+    private static int rot(int e){
+        return (e & ~3) | ((e + 1) & 3);
+    }
+
+    private static int sym(int e){
+        return e ^ 2;
+    }
+
+    private static int invRot(int e){
+        return (e & ~3) | ((e + 3) & 3);
+    }
+
+    private int org(int e){
+        return org[e >> 1];
+    }
+
+    private int dest(int e){
+        return org[sym(e) >> 1];
+    }
+
+    private int lnext(int e){
+        return rot(onext[invRot(e)]);
+    }
+
+    private int oprev(int e){
+        return rot(onext[rot(e)]);
+    }
+
+    private int rprev(int e){
+        return onext[sym(e)];
+    }
+
+    /**
+     * 空いている辺の組を取り出して辺を生成する
+     * @param free 空きリストの先頭 {@code free[0]}. 取り出した分だけ進める
+     */
+    private int makeEdge(int[] free, int origin, int destination){
+        final int q = free[0];
+        free[0] = onext[q << 2];
+        final int e = q << 2;
+        onext[e] = e;
+        onext[e+1] = e + 3;
+        onext[e+2] = e + 2;
+        onext[e+3] = e + 1;
+        org[e >> 1] = origin;
+        org[(e >> 1) + 1] = destination;
+        return e;
+    }
+
+    private void splice(int a, int b){
+        final int alpha = rot(onext[a]);
+        final int beta = rot(onext[b]);
+        final int t1 = onext[b];
+        final int t2 = onext[a];
+        final int t3 = onext[beta];
+        final int t4 = onext[alpha];
+        onext[a] = t1;
+        onext[b] = t2;
+        onext[alpha] = t3;
+        onext[beta] = t4;
+    }
+
+    private int connect(int[] free, int a, int b){
+        final int e = makeEdge(free, dest(a), org(b));
+        splice(e, lnext(a));
+        splice(sym(e), b);
+        return e;
+    }
+
+    /**
+     * 辺を取り除き、その辺の組を空きリストの先頭に戻す
+     */
+    private void deleteEdge(int[] free, int e){
+        splice(e, oprev(e));
+        splice(sym(e), oprev(sym(e)));
+        final int q = e >> 2;
+        onext[q << 2] = free[0];
+        free[0] = q;
+    }
+
+    private class Task extends RecursiveTask<int[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        Task(int from, int to){
+            this.from = from;
+            this.to = to;
+        }
+
+        private final int from, to;
+
+        @Override
+        protected int[] compute() {
+            return solve(from, to, true);
+        }
+    }
+
+    /**
+     * {@code order[from, to)}の点集合を分割する
+     * @return {最左の点から出る反時計回りの凸包上の辺, 最右の点から出る時計回りの凸包上の辺, 空きリストの先頭, 空きリストの末尾}
+     */
+    private int[] solve(int from, int to, boolean parallel){
+        final int n = to - from;
+        int[] result;
+        if ( n < 2 ){
+            // 点集合全体が2点未満の場合のみ
+            result = new int[]{-1, -1, -1, -1};
+        }else if ( n < 4 ){
+            // 割り当てられた辺の組をすべて空きリストにつなぐ
+            final int first = 3 * from;
+            final int last = 3 * to - 1;
+            for ( int q=first ; q<last ; q++ ) onext[q << 2] = q + 1;
+            onext[last << 2] = -1;
+            int[] free = {first};
+            if ( n == 2 ){
+                int a = makeEdge(free, order[from], order[from+1]);
+                result = new int[]{a, sym(a), free[0], last};
+            }else{
+                int s1 = order[from];
+                int s2 = order[from+1];
+                int s3 = order[from+2];
+                int a = makeEdge(free, s1, s2);
+                int b = makeEdge(free, s2, s3);
+                splice(sym(a), b);
+                if ( ccw(s1, s2, s3) ){
+                    connect(free, b, a);
+                    result = new int[]{a, sym(b), free[0], last};
+                }else if ( ccw(s1, s3, s2) ){
+                    int c = connect(free, b, a);
+                    result = new int[]{sym(c), c, free[0], last};
+                }else{
+                    // 一直線上
+                    result = new int[]{a, sym(b), free[0], last};
+                }
+            }
+        }else{
+            final int mid = (from + to) >>> 1;
+            int[] left, right;
+            if ( parallel && n > threshold ){
+                Task task = new Task(from, mid);
+                task.fork();
+                right = solve(mid, to, true);
+                left = task.join();
+            }else{
+                left = solve(from, mid, false);
+                right = solve(mid, to, false);
+            }
+            // 左右の空きリストをつなぐ
+            onext[left[3] << 2] = right[2];
+            int[] free = {left[2]};
+            int[] hull = merge(free, left[0], left[1], right[0], right[1]);
+            // 末尾は右の空きリストの末尾のまま. 併合中に空きリストが尽きることはない
+            result = new int[]{hull[0], hull[1], free[0], right[3]};
+        }
+        if ( from == 0 && to == order.length ){
+            hullEdge = result;
+        }
+        return result;
+    }
+
+    private int[] merge(int[] free, int ldo, int ldi, int rdi, int rdo){
+        // 左右の点集合の下側の共通接線を探す
+        while ( true ){
+            if ( leftOf(org(rdi), ldi) ){
+                ldi = lnext(ldi);
+            }else if ( rightOf(org(ldi), rdi) ){
+                rdi = rprev(rdi);
+            }else{
+                break;
+            }
+        }
+        int basel = connect(free, sym(rdi), ldi);
+        if ( org(ldi) == org(ldo) ) ldo = sym(basel);
+        if ( org(rdi) == org(rdo) ) rdo = basel;
+
+        // 下から上へ辺を張りながら併合する
+        while ( true ){
+            int lcand = onext[sym(basel)];
+            if ( valid(lcand, basel) ){
+                while ( inCircle(dest(basel), org(basel), dest(lcand), dest(onext[lcand])) ){
+                    int t = onext[lcand];
+                    deleteEdge(free, lcand);
+                    lcand = t;
+                }
+            }
+            int rcand = oprev(basel);
+            if ( valid(rcand, basel) ){
+                while ( inCircle(dest(basel), org(basel), dest(rcand), dest(oprev(rcand))) ){
+                    int t = oprev(rcand);
+                    deleteEdge(free, rcand);
+                    rcand = t;
+                }
+            }
+            boolean leftValid = valid(lcand, basel);
+            boolean rightValid = valid(rcand, basel);
+            if ( !leftValid && !rightValid ) break;
+            if ( !leftValid || (rightValid && inCircle(dest(lcand), org(lcand), org(rcand), dest(rcand))) ){
+                basel = connect(free, rcand, sym(basel));
+            }else{
+                basel = connect(free, sym(basel), sym(lcand));
+            }
+        }
+        return new int[]{ldo, rdo};
+    }
+
+    private boolean valid(int e, int basel){
+        return rightOf(dest(e), basel);
+    }
+
+    private boolean rightOf(int p, int e){
+        return ccw(p, dest(e), org(e));
+    }
+
+    private boolean leftOf(int p, int e){
+        return ccw(p, org(e), dest(e));
+    }
+
+    private boolean ccw(int a, int b, int c){
+        return Predicates.orient2d(coords[2*a], coords[2*a+1], coords[2*b], coords[2*b+1], coords[2*c], coords[2*c+1]) > 0;
+    }
+
+    /**
+     * 反時計回りの三角形abcの外接円の内部に点dが含まれるか判定
+     */
+    private boolean inCircle(int a, int b, int c, int d){
+        return Predicates.inCircle(
+                coords[2*a], coords[2*a+1],
+                coords[2*b], coords[2*b+1],
+                coords[2*c], coords[2*c+1],
+                coords[2*d], coords[2*d+1]
+        ) > 0;
+    }
+
+    /**
+     * 辺の接続関係から三角形と半辺の配列に変換する
+     */
+    private FlatTriangulation build(Point[] points){
+        final int n = order.length;
+        if ( n < 3 || hullEdge[0] < 0 ){
+            return new FlatTriangulation(coords, points, new int[0], new int[0], order.clone());
+        }
+        int[] triangles = new int[Math.max(2 * n - 5, 0) * 3];
+        int[] assigned = new int[triangles.length];
+        // 双対でない有向辺 e ごとの半辺のindex index[e/2]. 未割り当てなら-1
+        final int[] index = new int[org.length];
+        final boolean[] visited = new boolean[org.length];
+        Arrays.fill(index, -1);
+        int size = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = hullEdge[0];
+        while ( top > 0 ){
+            int e = stack[--top];
+            if ( visited[e >> 1] ) continue;
+            visited[e >> 1] = true;
+            if ( top + 2 > stack.length ) stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[top++] = sym(e);
+            stack[top++] = onext[e];
+            if ( index[e >> 1] < 0 ){
+                int e1 = lnext(e);
+                int e2 = lnext(e1);
+                if ( lnext(e2) == e && ccw(org(e), org(e1), org(e2)) ){
+                    // FlatTriangulation に合わせて時計回りに並べる
+                    index[e2 >> 1] = size;
+                    index[e1 >> 1] = size + 1;
+                    index[e >> 1] = size + 2;
+                    triangles[size] = org(e);
+                    triangles[size+1] = org(e2);
+                    triangles[size+2] = org(e1);
+                    assigned[size] = e2;
+                    assigned[size+1] = e1;
+                    assigned[size+2] = e;
+                    size += 3;
+                }
+            }
+        }
+        int[] halfedges = new int[size];
+        for ( int i=0 ; i<size ; i++ ){
+            halfedges[i] = index[sym(assigned[i]) >> 1];
+        }
+        int[] hull;
+        if ( size == 0 ){
+            // すべての点が一直線上
+            hull = order.clone();
+        }else{
+            // 凸包の外側を左手に見ながら辿ると時計回り
+            hull = new int[n];
+            int length = 0;
+            int start = sym(hullEdge[0]);
+            int e = start;
+            do {
+                hull[length++] = org(e);
+                e = lnext(e);
+            } while ( e != start );
+            hull = Arrays.copyOf(hull, length);
+        }
+        return new FlatTriangulation(coords, points, Arrays.copyOf(triangles, size), halfedges, hull);
+    }
+
+}
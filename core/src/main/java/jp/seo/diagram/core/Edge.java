@@ -35,6 +35,8 @@ public class Edge {
     public final Point a,b;
 
     private Line line;
+    /* 端点は不変なので一度計算したハッシュ値を使いまわす. 0は未計算 */
+    private int hash;
 
     @Override
     public boolean equals(Object other){
@@ -47,9 +49,13 @@ public class Edge {
 
     @Override
     public int hashCode(){
-        int result = 17;
-        result = result * 31 + a.hashCode();
-        result = result * 31 + b.hashCode();
+        int result = hash;
+        if ( result == 0 ){
+            result = 17;
+            result = result * 31 + a.hashCode();
+            result = result * 31 + b.hashCode();
+            hash = result;
+        }
         return result;
     }
 
@@ -0,0 +1,140 @@
+package jp.seo.diagram.core;
+
+import java.util.function.Consumer;
+
+/**
+ * 辺の両端点をキーとして{@link DelaunayDiagram.TrianglePair}を保持するハッシュ表.<br>
+ * 端点の{@link Vertex#id}を(小さい方, 大きい方)の順にlongへ詰めたキーで開番地法（線形探索）により管理し、
+ * キーと値を並列の配列に直接保持します.
+ * 検索時に座標値のハッシュ計算や{@link Point}の比較を行わず、要素ごとのノードも割り当てません
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+final class EdgeTable {
+
+    EdgeTable(int expected){
+        int capacity = 16;
+        while ( capacity * LOAD_FACTOR < expected ) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private DelaunayDiagram.TrianglePair[] values;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    private void allocate(int capacity){
+        keys = new long[capacity];
+        values = new DelaunayDiagram.TrianglePair[capacity];
+        mask = capacity - 1;
+        threshold = (int)(capacity * LOAD_FACTOR);
+    }
+
+    int size(){
+        return size;
+    }
+
+    /**
+     * 辺abを共有する三角形の組を取得する. 端点の順序は問わない
+     * @param a {@link Vertex}
+     * @param b {@link Vertex}
+     * @return Null if not found
+     */
+    DelaunayDiagram.TrianglePair get(Point a, Point b){
+        int slot = find(key(a, b));
+        return slot < 0 ? null : values[slot];
+    }
+
+    /**
+     * 三角形の組をその共有する辺{@link DelaunayDiagram.TrianglePair#a}-{@link DelaunayDiagram.TrianglePair#b}をキーとして追加する.
+     * 同じ辺がすでにある場合は置き換える
+     */
+    void put(DelaunayDiagram.TrianglePair pair){
+        long key = key(pair.a, pair.b);
+        int slot = find(key);
+        if ( slot >= 0 ){
+            values[slot] = pair;
+            return;
+        }
+        if ( size >= threshold ){
+            rehash();
+        }
+        slot = hash(key) & mask;
+        while ( values[slot] != null ){
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = pair;
+        size++;
+    }
+
+    /**
+     * 辺abの要素を削除する. 端点の順序は問わない
+     * @return 削除した要素 Null if not found
+     */
+    DelaunayDiagram.TrianglePair remove(Point a, Point b){
+        int slot = find(key(a, b));
+        if ( slot < 0 ) return null;
+        DelaunayDiagram.TrianglePair value = values[slot];
+        // 探索列が途切れないように後続の要素を詰める
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while ( values[next] != null ){
+            int home = hash(keys[next]) & mask;
+            if ( ((next - home) & mask) >= ((next - hole) & mask) ){
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[hole] = null;
+        size--;
+        return value;
+    }
+
+    void forEach(Consumer<DelaunayDiagram.TrianglePair> action){
+        for ( DelaunayDiagram.TrianglePair value : values ){
+            if ( value != null ) action.accept(value);
+        }
+    }
+
+    private int find(long key){
+        int slot = hash(key) & mask;
+        while ( values[slot] != null ){
+            if ( keys[slot] == key ) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(){
+        long[] oldKeys = keys;
+        DelaunayDiagram.TrianglePair[] oldValues = values;
+        allocate(oldValues.length << 1);
+        for ( int i=0 ; i<oldValues.length ; i++ ){
+            if ( oldValues[i] == null ) continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while ( values[slot] != null ){
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static long key(Point a, Point b){
+        int i = ((Vertex)a).id;
+        int j = ((Vertex)b).id;
+        return i < j ? ((long)i << 32) | j : ((long)j << 32) | i;
+    }
+
+    private static int hash(long key){
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+}
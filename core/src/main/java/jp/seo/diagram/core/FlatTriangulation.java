@@ -0,0 +1,904 @@
+package jp.seo.diagram.core;
+
+import java.util.*;
+
+/**
+ * 座標と三角形をプリミティブ配列で保持するドロネー分割.<br>
+ * 三角形ひとつ毎にオブジェクトを生成する{@link DelaunayDiagram}の逐次添加法と異なり、
+ * 頂点座標を{@code double[]}、三角形と半辺の隣接関係を{@code int[]}で表現します.
+ * 分割にはsweep-hull法を用います.
+ * <ul>
+ *     <li>{@code triangles[3t], triangles[3t+1], triangles[3t+2]} : t番目の三角形の頂点index</li>
+ *     <li>{@code halfedges[e]} : 半辺eと向きが逆で同じ辺をなす半辺、凸包上の辺なら-1</li>
+ * </ul>
+ * 半辺eは頂点{@code triangles[e]}から頂点{@code triangles[next(e)]}へ向かいます.
+ * {@link #getTriangles()}などは配列を参照するビューで、要素を取得するたびにオブジェクトを生成します.
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+public class FlatTriangulation {
+
+    //base algorithm is retrieved from
+    //https://github.com/mapbox/delaunator
+
+    private static final double EPSILON = Math.pow(2, -52);
+
+    /**
+     * 母点集合を指定して分割を計算する
+     * @param points 重複のない点の集合. 各点のindexはこのリストでの位置
+     */
+    public FlatTriangulation(List<? extends Point> points){
+        this(toCoordinates(points));
+        this.points = points.toArray(new Point[0]);
+    }
+
+    /**
+     * 座標値を指定して分割を計算する
+     * @param coords {@code [x0, y0, x1, y1, ...]} 点iの座標は{@code (coords[2i], coords[2i+1])}
+     */
+    public FlatTriangulation(double[] coords){
+        this.coords = coords;
+        final int n = coords.length >> 1;
+        final int maxTriangles = Math.max(2 * n - 5, 0);
+        triangles = new int[maxTriangles * 3];
+        halfedges = new int[maxTriangles * 3];
+        hashSize = (int)Math.ceil(Math.sqrt(n));
+        hullPrev = new int[n];
+        hullNext = new int[n];
+        hullTri = new int[n];
+        hullHash = new int[Math.max(hashSize, 1)];
+        edgeStack = new int[512];
+        solve();
+        triangles = Arrays.copyOf(triangles, trianglesLen);
+        halfedges = Arrays.copyOf(halfedges, trianglesLen);
+        hullPrev = null;
+        hullNext = null;
+        hullTri = null;
+        hullHash = null;
+        edgeStack = null;
+    }
+
+    /**
+     * 計算済みの配列から生成する
+     */
+    FlatTriangulation(double[] coords, Point[] points, int[] triangles, int[] halfedges, int[] hull){
+        this.coords = coords;
+        this.points = points;
+        this.triangles = triangles;
+        this.halfedges = halfedges;
+        this.hull = hull;
+    }
+
+    /**
+     * 三角形の集合から生成する. 頂点のindexは三角形を列挙した順に割り当てる
+     * @param solved 分割された三角形の集合 {@link DelaunayDiagram#getTriangles()}
+     */
+    static FlatTriangulation of(Collection<Triangle> solved){
+        final Map<Point, Integer> index = new HashMap<>();
+        final List<Point> points = new ArrayList<>();
+        final int[] triangles = new int[solved.size() * 3];
+        int e = 0;
+        for ( Triangle t : solved ){
+            // 時計回りに揃える
+            Point b = t.b;
+            Point c = t.c;
+            if ( Predicates.orient2d(t.a, b, c) > 0 ){
+                b = t.c;
+                c = t.b;
+            }
+            triangles[e++] = indexOf(t.a, index, points);
+            triangles[e++] = indexOf(b, index, points);
+            triangles[e++] = indexOf(c, index, points);
+        }
+        // 対をなす半辺
+        final int[] halfedges = new int[triangles.length];
+        final Map<Long, Integer> open = new HashMap<>();
+        for ( e=0 ; e<triangles.length ; e++ ){
+            int from = triangles[e];
+            int to = triangles[nextHalfEdge(e)];
+            Integer twin = open.remove(((long)to << 32) | from);
+            if ( twin == null ){
+                open.put(((long)from << 32) | to, e);
+                halfedges[e] = -1;
+            }else{
+                halfedges[e] = twin;
+                halfedges[twin] = e;
+            }
+        }
+        // 凸包 対をなさない半辺を辿る
+        final Map<Integer, Integer> next = new HashMap<>();
+        for ( int key : open.values() ){
+            next.put(triangles[key], triangles[nextHalfEdge(key)]);
+        }
+        final int[] hull = new int[next.size()];
+        if ( hull.length > 0 ){
+            int current = next.keySet().iterator().next();
+            for ( int i=0 ; i<hull.length ; i++ ){
+                hull[i] = current;
+                current = next.get(current);
+            }
+        }
+        return new FlatTriangulation(toCoordinates(points), points.toArray(new Point[0]), triangles, halfedges, hull);
+    }
+
+    private static int indexOf(Point point, Map<Point, Integer> index, List<Point> points){
+        Integer i = index.get(point);
+        if ( i == null ){
+            i = points.size();
+            index.put(point, i);
+            points.add(point);
+        }
+        return i;
+    }
+
+    private static double[] toCoordinates(List<? extends Point> points){
+        double[] coords = new double[points.size() * 2];
+        int i = 0;
+        for ( Point p : points ){
+            coords[i++] = p.getX();
+            coords[i++] = p.getY();
+        }
+        return coords;
+    }
+
+    private final double[] coords;
+    private int[] triangles;
+    private int[] halfedges;
+    private int[] hull;
+    private Point[] points;
+
+    private int trianglesLen;
+    private int hashSize;
+    private int hullStart;
+    private double cx, cy;
+    private int[] hullPrev, hullNext, hullTri, hullHash;
+    private int[] edgeStack;
+
+    /* 頂点 -> その頂点へ向かう半辺（凸包上の頂点なら凸包上の半辺）*/
+    private int[] inedges;
+    private Map<Point, Integer> indexMap;
+
+    /**
+     * 頂点の座標値
+     * @return {@code [x0, y0, x1, y1, ...]}
+     */
+    public double[] getCoordinates(){
+        return coords;
+    }
+
+    /**
+     * 三角形の頂点index. 長さは三角形の数の3倍
+     */
+    public int[] getTriangleIndices(){
+        return triangles;
+    }
+
+    /**
+     * 各半辺と対をなす半辺のindex. 凸包上の辺なら-1
+     */
+    public int[] getHalfEdges(){
+        return halfedges;
+    }
+
+    /**
+     * 凸包をなす頂点のindex
+     */
+    public int[] getHull(){
+        return hull;
+    }
+
+    public int getPointSize(){
+        return coords.length >> 1;
+    }
+
+    public int getTriangleSize(){
+        return triangles.length / 3;
+    }
+
+    public static int nextHalfEdge(int e){
+        return e % 3 == 2 ? e - 2 : e + 1;
+    }
+
+    public static int previousHalfEdge(int e){
+        return e % 3 == 0 ? e + 2 : e - 1;
+    }
+
+    private void solve(){
+        final int n = coords.length >> 1;
+        if ( n < 3 ){
+            hull = new int[0];
+            return;
+        }
+        int[] ids = new int[n];
+        double[] dists = new double[n];
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for ( int i=0 ; i<n ; i++ ){
+            double x = coords[2*i];
+            double y = coords[2*i+1];
+            if ( x < minX ) minX = x;
+            if ( y < minY ) minY = y;
+            if ( x > maxX ) maxX = x;
+            if ( y > maxY ) maxY = y;
+            ids[i] = i;
+        }
+        final double centerX = (minX + maxX) / 2;
+        final double centerY = (minY + maxY) / 2;
+
+        // 中心に近い点を最初の三角形の頂点に選ぶ
+        int i0 = 0;
+        double minDist = Double.POSITIVE_INFINITY;
+        for ( int i=0 ; i<n ; i++ ){
+            double d = dist(centerX, centerY, coords[2*i], coords[2*i+1]);
+            if ( d < minDist ){
+                i0 = i;
+                minDist = d;
+            }
+        }
+        final double i0x = coords[2*i0];
+        final double i0y = coords[2*i0+1];
+
+        int i1 = -1;
+        minDist = Double.POSITIVE_INFINITY;
+        for ( int i=0 ; i<n ; i++ ){
+            if ( i == i0 ) continue;
+            double d = dist(i0x, i0y, coords[2*i], coords[2*i+1]);
+            if ( d < minDist && d > 0 ){
+                i1 = i;
+                minDist = d;
+            }
+        }
+        if ( i1 < 0 ){
+            // すべて同じ点
+            hull = new int[]{i0};
+            return;
+        }
+        double i1x = coords[2*i1];
+        double i1y = coords[2*i1+1];
+
+        // 外接円が最小となる三点目
+        int i2 = -1;
+        double minRadius = Double.POSITIVE_INFINITY;
+        for ( int i=0 ; i<n ; i++ ){
+            if ( i == i0 || i == i1 ) continue;
+            double r = circumradius(i0x, i0y, i1x, i1y, coords[2*i], coords[2*i+1]);
+            if ( r < minRadius ){
+                i2 = i;
+                minRadius = r;
+            }
+        }
+
+        if ( i2 < 0 ){
+            // すべての点が一直線上にある場合は三角形なし
+            for ( int i=0 ; i<n ; i++ ){
+                double d = coords[2*i] - coords[0];
+                dists[i] = d != 0 ? d : coords[2*i+1] - coords[1];
+            }
+            quicksort(ids, dists, 0, n-1);
+            int[] list = new int[n];
+            int j = 0;
+            double d0 = Double.NEGATIVE_INFINITY;
+            for ( int i=0 ; i<n ; i++ ){
+                int id = ids[i];
+                if ( dists[id] > d0 ){
+                    list[j++] = id;
+                    d0 = dists[id];
+                }
+            }
+            hull = Arrays.copyOf(list, j);
+            return;
+        }
+        double i2x = coords[2*i2];
+        double i2y = coords[2*i2+1];
+
+        // 時計回りに並べる
+        if ( orient(i0x, i0y, i1x, i1y, i2x, i2y) > 0 ){
+            int i = i1;
+            double x = i1x;
+            double y = i1y;
+            i1 = i2;
+            i1x = i2x;
+            i1y = i2y;
+            i2 = i;
+            i2x = x;
+            i2y = y;
+        }
+
+        double[] center = circumcenter(i0x, i0y, i1x, i1y, i2x, i2y);
+        cx = center[0];
+        cy = center[1];
+
+        for ( int i=0 ; i<n ; i++ ){
+            dists[i] = dist(coords[2*i], coords[2*i+1], cx, cy);
+        }
+        // 最初の三角形の外心から近い順に追加する
+        quicksort(ids, dists, 0, n-1);
+
+        hullStart = i0;
+        int hullSize = 3;
+
+        hullNext[i0] = hullPrev[i2] = i1;
+        hullNext[i1] = hullPrev[i0] = i2;
+        hullNext[i2] = hullPrev[i1] = i0;
+
+        hullTri[i0] = 0;
+        hullTri[i1] = 1;
+        hullTri[i2] = 2;
+
+        Arrays.fill(hullHash, -1);
+        hullHash[hashKey(i0x, i0y)] = i0;
+        hullHash[hashKey(i1x, i1y)] = i1;
+        hullHash[hashKey(i2x, i2y)] = i2;
+
+        trianglesLen = 0;
+        addTriangle(i0, i1, i2, -1, -1, -1);
+
+        double xp = 0, yp = 0;
+        for ( int k=0 ; k<n ; k++ ){
+            final int i = ids[k];
+            final double x = coords[2*i];
+            final double y = coords[2*i+1];
+
+            // 重複点は無視
+            if ( k > 0 && Math.abs(x - xp) <= EPSILON && Math.abs(y - yp) <= EPSILON ) continue;
+            xp = x;
+            yp = y;
+
+            if ( i == i0 || i == i1 || i == i2 ) continue;
+
+            // 凸包上で点から見える辺をハッシュを使って探す
+            int start = 0;
+            for ( int j=0, key=hashKey(x, y) ; j<hashSize ; j++ ){
+                start = hullHash[(key + j) % hashSize];
+                if ( start != -1 && start != hullNext[start] ) break;
+            }
+
+            start = hullPrev[start];
+            int e = start;
+            int q;
+            while ( true ){
+                q = hullNext[e];
+                if ( orient(x, y, coords[2*e], coords[2*e+1], coords[2*q], coords[2*q+1]) > 0 ) break;
+                e = q;
+                if ( e == start ){
+                    e = -1;
+                    break;
+                }
+            }
+            // ほぼ重複した点
+            if ( e == -1 ) continue;
+
+            int t = addTriangle(e, i, hullNext[e], -1, -1, hullTri[e]);
+
+            hullTri[i] = legalize(t + 2);
+            hullTri[e] = t;
+            hullSize++;
+
+            // 凸包を前方に辿りながら三角形を追加
+            int next = hullNext[e];
+            while ( true ){
+                q = hullNext[next];
+                if ( orient(x, y, coords[2*next], coords[2*next+1], coords[2*q], coords[2*q+1]) <= 0 ) break;
+                t = addTriangle(next, i, q, hullTri[i], -1, hullTri[next]);
+                hullTri[i] = legalize(t + 2);
+                hullNext[next] = next;
+                hullSize--;
+                next = q;
+            }
+
+            // 後方にも辿る
+            if ( e == start ){
+                while ( true ){
+                    q = hullPrev[e];
+                    if ( orient(x, y, coords[2*q], coords[2*q+1], coords[2*e], coords[2*e+1]) <= 0 ) break;
+                    t = addTriangle(q, i, e, -1, hullTri[e], hullTri[q]);
+                    legalize(t + 2);
+                    hullTri[q] = t;
+                    hullNext[e] = e;
+                    hullSize--;
+                    e = q;
+                }
+            }
+
+            hullStart = hullPrev[i] = e;
+            hullNext[e] = hullPrev[next] = i;
+            hullNext[i] = next;
+
+            hullHash[hashKey(x, y)] = i;
+            hullHash[hashKey(coords[2*e], coords[2*e+1])] = e;
+        }
+
+        hull = new int[hullSize];
+        for ( int i=0, e=hullStart ; i<hullSize ; i++ ){
+            hull[i] = e;
+            e = hullNext[e];
+        }
+    }
+
+    private int hashKey(double x, double y){
+        return (int)Math.floor(pseudoAngle(x - cx, y - cy) * hashSize) % hashSize;
+    }
+
+    /**
+     * 半辺aを共有する三角形の組がドロネー条件を満たすまでフリップする
+     */
+    private int legalize(int a){
+        int i = 0;
+        int ar;
+
+        // 再帰呼び出しの代わりに固定長のスタックを使う
+        while ( true ){
+            final int b = halfedges[a];
+
+            final int a0 = a - a % 3;
+            ar = a0 + (a + 2) % 3;
+
+            if ( b == -1 ){
+                if ( i == 0 ) break;
+                a = edgeStack[--i];
+                continue;
+            }
+
+            final int b0 = b - b % 3;
+            final int al = a0 + (a + 1) % 3;
+            final int bl = b0 + (b + 2) % 3;
+
+            final int p0 = triangles[ar];
+            final int pr = triangles[a];
+            final int pl = triangles[al];
+            final int p1 = triangles[bl];
+
+            boolean illegal = inCircle(
+                    coords[2*p0], coords[2*p0+1],
+                    coords[2*pr], coords[2*pr+1],
+                    coords[2*pl], coords[2*pl+1],
+                    coords[2*p1], coords[2*p1+1]
+            );
+
+            if ( illegal ){
+                triangles[a] = p1;
+                triangles[b] = p0;
+
+                final int hbl = halfedges[bl];
+
+                // 凸包上の辺がフリップされた場合は参照を修正
+                if ( hbl == -1 ){
+                    int e = hullStart;
+                    do {
+                        if ( hullTri[e] == bl ){
+                            hullTri[e] = a;
+                            break;
+                        }
+                        e = hullPrev[e];
+                    } while ( e != hullStart );
+                }
+                link(a, hbl);
+                link(b, halfedges[ar]);
+                link(ar, bl);
+
+                final int br = b0 + (b + 1) % 3;
+
+                if ( i < edgeStack.length ){
+                    edgeStack[i++] = br;
+                }
+            }else{
+                if ( i == 0 ) break;
+                a = edgeStack[--i];
+            }
+        }
+        return ar;
+    }
+
+    private void link(int a, int b){
+        halfedges[a] = b;
+        if ( b != -1 ) halfedges[b] = a;
+    }
+
+    private int addTriangle(int i0, int i1, int i2, int a, int b, int c){
+        final int t = trianglesLen;
+        triangles[t] = i0;
+        triangles[t + 1] = i1;
+        triangles[t + 2] = i2;
+        link(t, a);
+        link(t + 1, b);
+        link(t + 2, c);
+        trianglesLen += 3;
+        return t;
+    }
+
+    /**
+     * 角度に対して単調増加する値を三角関数を使わずに計算する
+     * @return [0,1]
+     */
+    private static double pseudoAngle(double dx, double dy){
+        double p = dx / (Math.abs(dx) + Math.abs(dy));
+        return (dy > 0 ? 3 - p : 1 + p) / 4;
+    }
+
+    private static double dist(double ax, double ay, double bx, double by){
+        double dx = ax - bx;
+        double dy = ay - by;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * @return 正なら反時計回り、負なら時計回り
+     */
+    private static double orient(double ax, double ay, double bx, double by, double cx, double cy){
+        return Predicates.orient2d(ax, ay, bx, by, cx, cy);
+    }
+
+    /**
+     * 時計回りの三角形abcの外接円の内部に点pが含まれるか判定
+     */
+    private static boolean inCircle(double ax, double ay, double bx, double by, double cx, double cy, double px, double py){
+        return Predicates.inCircle(ax, ay, bx, by, cx, cy, px, py) < 0;
+    }
+
+    private static double circumradius(double ax, double ay, double bx, double by, double cx, double cy){
+        double dx = bx - ax;
+        double dy = by - ay;
+        double ex = cx - ax;
+        double ey = cy - ay;
+
+        double bl = dx * dx + dy * dy;
+        double cl = ex * ex + ey * ey;
+        double d = 0.5 / (dx * ey - dy * ex);
+
+        double x = (ey * bl - dy * cl) * d;
+        double y = (dx * cl - ex * bl) * d;
+
+        return x * x + y * y;
+    }
+
+    private static double[] circumcenter(double ax, double ay, double bx, double by, double cx, double cy){
+        double dx = bx - ax;
+        double dy = by - ay;
+        double ex = cx - ax;
+        double ey = cy - ay;
+
+        double bl = dx * dx + dy * dy;
+        double cl = ex * ex + ey * ey;
+        double d = 0.5 / (dx * ey - dy * ex);
+
+        return new double[]{
+                ax + (ey * bl - dy * cl) * d,
+                ay + (dx * cl - ex * bl) * d
+        };
+    }
+
+    /**
+     * idsの範囲 [left, right] を dists[id] の昇順に並べ替える
+     */
+    static void quicksort(int[] ids, double[] dists, int left, int right){
+        if ( right - left <= 20 ){
+            for ( int i=left+1 ; i<=right ; i++ ){
+                int temp = ids[i];
+                double tempDist = dists[temp];
+                int j = i - 1;
+                while ( j >= left && dists[ids[j]] > tempDist ) ids[j + 1] = ids[j--];
+                ids[j + 1] = temp;
+            }
+        }else{
+            int median = (left + right) >> 1;
+            int i = left + 1;
+            int j = right;
+            swap(ids, median, i);
+            if ( dists[ids[left]] > dists[ids[right]] ) swap(ids, left, right);
+            if ( dists[ids[i]] > dists[ids[right]] ) swap(ids, i, right);
+            if ( dists[ids[left]] > dists[ids[i]] ) swap(ids, left, i);
+
+            int temp = ids[i];
+            double tempDist = dists[temp];
+            while ( true ){
+                do i++; while ( dists[ids[i]] < tempDist );
+                do j--; while ( dists[ids[j]] > tempDist );
+                if ( j < i ) break;
+                swap(ids, i, j);
+            }
+            ids[left + 1] = ids[j];
+            ids[j] = temp;
+
+            if ( right - i + 1 >= j - left ){
+                quicksort(ids, dists, i, right);
+                quicksort(ids, dists, left, j - 1);
+            }else{
+                quicksort(ids, dists, left, j - 1);
+                quicksort(ids, dists, i, right);
+            }
+        }
+    }
+
+    private static void swap(int[] array, int i, int j){
+        int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+
+    //========== ビュー ==============================================
+
+    /**
+     * 指定したindexの頂点
+     */
+    public Point getPoint(int index){
+        if ( points == null ){
+            points = new Point[getPointSize()];
+        }
+        Point p = points[index];
+        if ( p == null ){
+            p = new BasePoint(coords[2*index], coords[2*index+1]);
+            points[index] = p;
+        }
+        return p;
+    }
+
+    /**
+     * 指定した点のindexを取得する
+     * @return 分割に含まれない点なら-1
+     */
+    public int indexOf(Point point){
+        if ( indexMap == null ){
+            Map<Point, Integer> map = new HashMap<>();
+            int[] in = getInEdges();
+            for ( int i=0 ; i<in.length ; i++ ){
+                if ( in[i] >= 0 ) map.put(getPoint(i), i);
+            }
+            indexMap = map;
+        }
+        Integer index = indexMap.get(point);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * 各頂点へ向かう半辺. 凸包上の頂点なら凸包上の半辺
+     * @return 分割に含まれない頂点は-1
+     */
+    int[] getInEdges(){
+        if ( inedges == null ){
+            int[] in = new int[getPointSize()];
+            Arrays.fill(in, -1);
+            for ( int e=0 ; e<triangles.length ; e++ ){
+                int p = triangles[nextHalfEdge(e)];
+                // 凸包上の頂点は凸包上の半辺から辿り始める
+                if ( halfedges[e] == -1 || in[p] == -1 ) in[p] = e;
+            }
+            inedges = in;
+        }
+        return inedges;
+    }
+
+    /**
+     * 頂点と辺で結ばれた点との辺を共有する三角形の組を反時計回りの順に列挙する
+     * @param index 頂点のindex
+     * @param out 三角形の組を追加するリスト
+     * @return 分割に含まれない点ならfalse
+     */
+    boolean getPairsAround(int index, List<DelaunayDiagram.TrianglePair> out){
+        final int start = getInEdges()[index];
+        if ( start < 0 ) return false;
+        int e = start;
+        do {
+            // e: ? -> index
+            out.add(toPair(e));
+            int o = nextHalfEdge(e);
+            e = halfedges[o];
+            if ( e == -1 ){
+                // 凸包上の頂点
+                out.add(toPair(o));
+            }
+        } while ( e != -1 && e != start );
+        return true;
+    }
+
+    /**
+     * 頂点aと頂点bを結ぶ辺をなす半辺のひとつを探す
+     * @return 辺が存在しない場合は-1
+     */
+    public int findHalfEdge(int a, int b){
+        if ( a < 0 || b < 0 ) return -1;
+        final int start = getInEdges()[a];
+        if ( start < 0 ) return -1;
+        int e = start;
+        do {
+            // e: ? -> a
+            if ( triangles[e] == b ) return e;
+            int out = nextHalfEdge(e);
+            // out: a -> ?
+            if ( triangles[nextHalfEdge(out)] == b ) return out;
+            e = halfedges[out];
+        } while ( e != -1 && e != start );
+        return -1;
+    }
+
+    private Triangle toTriangle(int t){
+        return new Triangle(getPoint(triangles[3*t]), getPoint(triangles[3*t+1]), getPoint(triangles[3*t+2]));
+    }
+
+    private Edge toEdge(int e){
+        return new Edge(getPoint(triangles[e]), getPoint(triangles[nextHalfEdge(e)]));
+    }
+
+    private DelaunayDiagram.TrianglePair toPair(int e){
+        Edge edge = toEdge(e);
+        Point p1 = getPoint(triangles[previousHalfEdge(e)]);
+        int twin = halfedges[e];
+        if ( twin < 0 ){
+            return new DelaunayDiagram.TrianglePair(edge, p1);
+        }else{
+            return new DelaunayDiagram.TrianglePair(edge, p1, getPoint(triangles[previousHalfEdge(twin)]));
+        }
+    }
+
+    private int findHalfEdge(Edge edge){
+        return findHalfEdge(indexOf(edge.a), indexOf(edge.b));
+    }
+
+    /**
+     * 分割された三角形の集合のビュー
+     * @see DelaunayDiagram#getTriangles()
+     */
+    public Set<Triangle> getTriangles(){
+        return new AbstractSet<Triangle>() {
+            @Override
+            public Iterator<Triangle> iterator() {
+                return new Iterator<Triangle>() {
+                    private int t = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return t < getTriangleSize();
+                    }
+
+                    @Override
+                    public Triangle next() {
+                        if ( !hasNext() ) throw new NoSuchElementException();
+                        return toTriangle(t++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return getTriangleSize();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if ( !(o instanceof Triangle) ) return false;
+                Triangle t = (Triangle)o;
+                int e = findHalfEdge(new Edge(t.a, t.b));
+                if ( e < 0 ) return false;
+                int c = indexOf(t.c);
+                if ( triangles[previousHalfEdge(e)] == c ) return true;
+                int twin = halfedges[e];
+                return twin >= 0 && triangles[previousHalfEdge(twin)] == c;
+            }
+        };
+    }
+
+    /**
+     * 分割された三角形の辺の集合のビュー
+     * @see DelaunayDiagram#getEdges()
+     */
+    public Set<Edge> getEdges(){
+        return new AbstractSet<Edge>() {
+            @Override
+            public Iterator<Edge> iterator() {
+                return new EdgeIterator<Edge>() {
+                    @Override
+                    Edge get(int e) {
+                        return toEdge(e);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return getEdgeSize();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Edge && findHalfEdge((Edge)o) >= 0;
+            }
+        };
+    }
+
+    /**
+     * 辺に対しその辺を共有する三角形の組のマッピングのビュー
+     * @see DelaunayDiagram#getEdgeTriangleMap()
+     */
+    public Map<Edge, DelaunayDiagram.TrianglePair> getEdgeTriangleMap(){
+        return new AbstractMap<Edge, DelaunayDiagram.TrianglePair>() {
+
+            @Override
+            public DelaunayDiagram.TrianglePair get(Object key) {
+                if ( !(key instanceof Edge) ) return null;
+                int e = findHalfEdge((Edge)key);
+                return e < 0 ? null : toPair(e);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof Edge && findHalfEdge((Edge)key) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return getEdgeSize();
+            }
+
+            @Override
+            public Set<Entry<Edge, DelaunayDiagram.TrianglePair>> entrySet() {
+                return new AbstractSet<Entry<Edge, DelaunayDiagram.TrianglePair>>() {
+                    @Override
+                    public Iterator<Entry<Edge, DelaunayDiagram.TrianglePair>> iterator() {
+                        return new EdgeIterator<Entry<Edge, DelaunayDiagram.TrianglePair>>() {
+                            @Override
+                            Entry<Edge, DelaunayDiagram.TrianglePair> get(int e) {
+                                DelaunayDiagram.TrianglePair pair = toPair(e);
+                                return new AbstractMap.SimpleImmutableEntry<>(pair.getEdge(), pair);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return getEdgeSize();
+                    }
+                };
+            }
+        };
+    }
+
+    private int edgeSize = -1;
+
+    private int getEdgeSize(){
+        if ( edgeSize < 0 ){
+            int cnt = 0;
+            for ( int e=0 ; e<halfedges.length ; e++ ){
+                if ( halfedges[e] < e ) cnt++;
+            }
+            edgeSize = cnt;
+        }
+        return edgeSize;
+    }
+
+    /**
+     * 各辺をちょうど一度ずつ辿る. 対をなす半辺のうちindexが大きい方（凸包上なら唯一の半辺）を代表とする
+     */
+    private abstract class EdgeIterator<E> implements Iterator<E> {
+
+        EdgeIterator(){
+            e = -1;
+            advance();
+        }
+
+        private int e;
+
+        private void advance(){
+            do {
+                e++;
+            } while ( e < halfedges.length && halfedges[e] > e );
+        }
+
+        abstract E get(int e);
+
+        @Override
+        public boolean hasNext() {
+            return e < halfedges.length;
+        }
+
+        @Override
+        public E next() {
+            if ( !hasNext() ) throw new NoSuchElementException();
+            E value = get(e);
+            advance();
+            return value;
+        }
+    }
+
+}
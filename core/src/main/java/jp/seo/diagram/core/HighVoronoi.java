@@ -57,6 +57,15 @@ public class HighVoronoi {
     private Set<Point> addedPoint;
     private Queue<Point> requestQueue;
     private boolean extensionRunning, traverseRunning;
+    private DiagramListener listener = DiagramListener.NONE;
+
+    /**
+     * 二等分線を追加する別スレッドの計測値を受け取るリスナーを指定する
+     * @param listener nullなら何もしない
+     */
+    public void setListener(DiagramListener listener){
+        this.listener = listener == null ? DiagramListener.NONE : listener;
+    }
 
     /**
      * 計算する
@@ -96,6 +105,7 @@ public class HighVoronoi {
 
         for ( int targetLevel = 1 ; targetLevel <= level ; targetLevel++ ){
             long loopTime = System.currentTimeMillis();
+            Object event = JfrEvents.begin(JfrEvents.Type.HIGH_VORONOI_LEVEL);
 
             startThread();
 
@@ -106,6 +116,7 @@ public class HighVoronoi {
             result[targetLevel - 1] = polygon;
 
             joinThread();
+            JfrEvents.commit(event, targetLevel, list.size(), bisectors.size());
 
             if (callback != null) {
                 callback.onResolved(targetLevel - 1, polygon, System.currentTimeMillis() - loopTime);
@@ -202,7 +213,7 @@ public class HighVoronoi {
 
     private synchronized void onExtensionComplete(int cnt, long elapsedTime) {
         extensionRunning = false;
-        System.out.println(String.format("addBisector > size:%d time:%d", cnt, elapsedTime));
+        listener.onPhaseCompleted(DiagramListener.Phase.BISECTOR_EXTENSION, cnt, elapsedTime);
         // 走査を既に終えたメインスレッドが待っている場合もあるので起こしてみる
         notifyAll();
     }
@@ -221,9 +232,9 @@ public class HighVoronoi {
                     Point request = dequeueRequest();
                     if (request == null) break;
                     cnt++;
-                    long time = System.currentTimeMillis();
+                    long time = System.nanoTime();
                     addBisector(request);
-                    elapsedTime += (System.currentTimeMillis() - time);
+                    elapsedTime += (System.nanoTime() - time);
                 }
                 onExtensionComplete(cnt, elapsedTime);
             }
@@ -0,0 +1,154 @@
+package jp.seo.diagram.core;
+
+import java.util.*;
+
+/**
+ * ドロネー分割で母点を逐次追加する順序を定義します.<br>
+ * 空間的に近い点を続けて追加すると、点を含む三角形の探索と
+ * フリップ操作の連鎖がともに局所的な範囲で済むため高速になります
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+public enum InsertionOrder {
+
+    /**
+     * 母点集合の反復順にそのまま追加する
+     */
+    NONE {
+        @Override
+        List<Point> sort(Collection<? extends Point> points, Random random) {
+            return new ArrayList<>(points);
+        }
+    },
+
+    /**
+     * 一様ランダムな順序で追加する
+     */
+    RANDOM {
+        @Override
+        List<Point> sort(Collection<? extends Point> points, Random random) {
+            List<Point> list = new ArrayList<>(points);
+            Collections.shuffle(list, random);
+            return list;
+        }
+    },
+
+    /**
+     * ヒルベルト曲線に沿った順序で追加する
+     */
+    HILBERT {
+        @Override
+        List<Point> sort(Collection<? extends Point> points, Random random) {
+            List<Point> list = new ArrayList<>(points);
+            new HilbertCurve(list).sort(list);
+            return list;
+        }
+    },
+
+    /**
+     * Biased Randomized Insertion Order.<br>
+     * ランダムに選んだ部分集合を大きさが倍々になるラウンドに分け、
+     * 各ラウンド内部はヒルベルト曲線に沿って並べる
+     */
+    BRIO {
+        @Override
+        List<Point> sort(Collection<? extends Point> points, Random random) {
+            List<Point> list = new ArrayList<>(points);
+            Collections.shuffle(list, random);
+            HilbertCurve curve = new HilbertCurve(list);
+            // 後ろ半分を最終ラウンド、その前の1/4をひとつ前のラウンド...と分割する
+            int end = list.size();
+            while ( end > 0 ){
+                int start = end > BRIO_MIN_ROUND ? end / 2 : 0;
+                curve.sort(list.subList(start, end));
+                end = start;
+            }
+            return list;
+        }
+    };
+
+    /**
+     * {@link #BRIO}で最初のラウンドとしてまとめる点の個数
+     */
+    private static final int BRIO_MIN_ROUND = 64;
+
+    /**
+     * 指定された順序に並べた新しいリストを返す
+     * @param points 並べる点
+     * @param random 乱数を使う場合はこのオブジェクトから取得する
+     * @return Non Null
+     */
+    abstract List<Point> sort(Collection<? extends Point> points, Random random);
+
+    /**
+     * 点集合を囲む正方形を{@code 2^ORDER}分割したグリッド上のヒルベルト曲線
+     */
+    private static class HilbertCurve {
+
+        private static final int ORDER = 15;
+
+        HilbertCurve(Collection<? extends Point> points){
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for ( Point p : points ){
+                minX = Math.min(minX, p.getX());
+                minY = Math.min(minY, p.getY());
+                maxX = Math.max(maxX, p.getX());
+                maxY = Math.max(maxY, p.getY());
+            }
+            double size = Math.max(maxX - minX, maxY - minY);
+            this.minX = minX;
+            this.minY = minY;
+            this.scale = size > 0 ? ((1 << ORDER) - 1) / size : 0;
+        }
+
+        private final double minX, minY, scale;
+
+        /**
+         * ヒルベルト曲線上の位置で昇順に並べる
+         */
+        void sort(List<Point> list){
+            final int size = list.size();
+            // 上位bitに曲線上の位置、下位32bitにindexを詰めてプリミティブ配列のままソートする
+            long[] keys = new long[size];
+            for ( int i=0 ; i<size ; i++ ){
+                keys[i] = (index(list.get(i)) << 32) | i;
+            }
+            Arrays.sort(keys);
+            Point[] sorted = new Point[size];
+            for ( int i=0 ; i<size ; i++ ){
+                sorted[i] = list.get((int)keys[i]);
+            }
+            for ( int i=0 ; i<size ; i++ ){
+                list.set(i, sorted[i]);
+            }
+        }
+
+        private long index(Point p){
+            int x = (int)((p.getX() - minX) * scale);
+            int y = (int)((p.getY() - minY) * scale);
+            final int n = 1 << ORDER;
+            long d = 0;
+            for ( int s = 1 << (ORDER-1) ; s > 0 ; s >>= 1 ){
+                int rx = (x & s) > 0 ? 1 : 0;
+                int ry = (y & s) > 0 ? 1 : 0;
+                d += (long)s * s * ((3 * rx) ^ ry);
+                // 象限に合わせて回転
+                if ( ry == 0 ){
+                    if ( rx == 1 ){
+                        x = n - 1 - x;
+                        y = n - 1 - y;
+                    }
+                    int temp = x;
+                    x = y;
+                    y = temp;
+                }
+            }
+            return d;
+        }
+
+    }
+
+}
@@ -0,0 +1,197 @@
+package jp.seo.diagram.core;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 計算の各段階をJDK Flight Recorderのイベントとして記録する.<br>
+ * Java 8でもコンパイル・実行できるように{@code jdk.jfr}はリフレクションで遅延して参照し、
+ * {@code jdk.jfr.EventFactory}でイベント型を動的に定義します.
+ * Flight Recorderが一度も初期化されていない（記録が開始されていない）間はイベント型を登録せず、
+ * 初期化後もイベント型が有効でない（その型を記録するRecordingが無い）間はイベントを生成しません
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+final class JfrEvents {
+
+    private JfrEvents(){}
+
+    /**
+     * イベントの種類. {@link DiagramListener.Phase}と同名の定数はその段階に対応する
+     */
+    enum Type {
+        TRIANGULATION("Triangulation", "Delaunay Triangulation", "size", "count"),
+        HULL("HullRepair", "Delaunay Hull Repair", "size", "count"),
+        EXTRACTION("Extraction", "Delaunay Extraction", "size", "count"),
+        VORONOI_EDGES("VoronoiEdges", "Voronoi Edge Clipping", "size", "count"),
+        VORONOI_AREAS("VoronoiAreas", "Voronoi Area Enclosing", "size", "count"),
+        BISECTOR_EXTENSION("BisectorExtension", "Bisector Extension", "size", "count"),
+        HIGH_VORONOI_LEVEL("HighVoronoiLevel", "High Voronoi Level", "level", "vertices", "bisectors");
+
+        Type(String name, String label, String... fields){
+            this.eventName = "jp.seo.diagram." + name;
+            this.label = label;
+            this.fields = fields;
+        }
+
+        private final String eventName, label;
+        private final String[] fields;
+
+        static Type of(DiagramListener.Phase phase){
+            return valueOf(phase.name());
+        }
+    }
+
+    private static final MethodHandle IS_INITIALIZED, CREATE, EVENT_TYPE, IS_ENABLED, NEW_EVENT, BEGIN, END, SHOULD_COMMIT, COMMIT, SET;
+    private static final Constructor<?> ANNOTATION, VALUE;
+    private static final Class<? extends Annotation> NAME, LABEL, CATEGORY;
+
+    private static final Object[] factories = new Object[Type.values().length];
+    private static final Object[] eventTypes = new Object[Type.values().length];
+    private static volatile boolean available;
+
+    static {
+        MethodHandle isInitialized = null, create = null, eventType = null, isEnabled = null, newEvent = null, begin = null, end = null, shouldCommit = null, commit = null, set = null;
+        Constructor<?> annotation = null, value = null;
+        Class<? extends Annotation> name = null, label = null, category = null;
+        try {
+            Class<?> recorder = Class.forName("jdk.jfr.FlightRecorder");
+            Class<?> factory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> type = Class.forName("jdk.jfr.EventType");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueClass = Class.forName("jdk.jfr.ValueDescriptor");
+            name = Class.forName("jdk.jfr.Name").asSubclass(Annotation.class);
+            label = Class.forName("jdk.jfr.Label").asSubclass(Annotation.class);
+            category = Class.forName("jdk.jfr.Category").asSubclass(Annotation.class);
+            // Method.invoke は呼び出しの度に引数の配列を生成するため MethodHandle#invokeExact で呼び出す
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            isInitialized = lookup.findStatic(recorder, "isInitialized", MethodType.methodType(boolean.class));
+            create = lookup.findStatic(factory, "create", MethodType.methodType(factory, List.class, List.class))
+                    .asType(MethodType.methodType(Object.class, List.class, List.class));
+            eventType = lookup.findVirtual(factory, "getEventType", MethodType.methodType(type))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            isEnabled = lookup.findVirtual(type, "isEnabled", MethodType.methodType(boolean.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class));
+            newEvent = lookup.findVirtual(factory, "newEvent", MethodType.methodType(event))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            begin = lookup.findVirtual(event, "begin", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            end = lookup.findVirtual(event, "end", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            shouldCommit = lookup.findVirtual(event, "shouldCommit", MethodType.methodType(boolean.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class));
+            commit = lookup.findVirtual(event, "commit", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            set = lookup.findVirtual(event, "set", MethodType.methodType(void.class, int.class, Object.class))
+                    .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+            annotation = annotationClass.getConstructor(Class.class, Object.class);
+            value = valueClass.getConstructor(Class.class, String.class, List.class);
+            available = true;
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            // Java 8 など jdk.jfr が無い環境では何も記録しない
+            available = false;
+        }
+        IS_INITIALIZED = isInitialized;
+        CREATE = create;
+        EVENT_TYPE = eventType;
+        IS_ENABLED = isEnabled;
+        NEW_EVENT = newEvent;
+        BEGIN = begin;
+        END = end;
+        SHOULD_COMMIT = shouldCommit;
+        COMMIT = commit;
+        SET = set;
+        ANNOTATION = annotation;
+        VALUE = value;
+        NAME = name;
+        LABEL = label;
+        CATEGORY = category;
+    }
+
+    /**
+     * イベントの計測を開始する.<br>
+     * 段階ごとに一度だけイベント型が有効か確認し、有効な場合に限りイベントを生成する.
+     * 記録が終了した後も{@code FlightRecorder}は初期化済みのままなので、有効か否かはイベント型で判定する
+     * @param type イベントの種類
+     * @return 記録中でなければNull
+     */
+    static Object begin(Type type){
+        if ( !available ) return null;
+        try {
+            if ( !(boolean)IS_INITIALIZED.invokeExact() ) return null;
+            Object factory = getFactory(type);
+            if ( !(boolean)IS_ENABLED.invokeExact(eventTypes[type.ordinal()]) ) return null;
+            Object event = (Object)NEW_EVENT.invokeExact(factory);
+            BEGIN.invokeExact(event);
+            return event;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            available = false;
+            return null;
+        }
+    }
+
+    /**
+     * 計測を終了してイベントを記録する.<br>
+     * 記録中でない場合に値の配列を生成しないよう、値の個数ごとに固定長の引数をとる
+     * @param event {@link #begin(Type)}の戻り値. Nullなら何もしない
+     * @param v0 イベントの種類で定義された1番目の値
+     * @param v1 2番目の値
+     */
+    static void commit(Object event, long v0, long v1){
+        if ( event == null ) return;
+        record(event, new long[]{v0, v1});
+    }
+
+    /**
+     * @see #commit(Object, long, long)
+     */
+    static void commit(Object event, long v0, long v1, long v2){
+        if ( event == null ) return;
+        record(event, new long[]{v0, v1, v2});
+    }
+
+    private static void record(Object event, long[] values){
+        try {
+            END.invokeExact(event);
+            if ( (boolean)SHOULD_COMMIT.invokeExact(event) ){
+                for ( int i=0 ; i<values.length ; i++ ){
+                    SET.invokeExact(event, i, (Object)values[i]);
+                }
+                COMMIT.invokeExact(event);
+            }
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            available = false;
+        }
+    }
+
+    private static synchronized Object getFactory(Type type) throws Throwable {
+        Object factory = factories[type.ordinal()];
+        if ( factory == null ){
+            List<Object> annotations = Arrays.asList(
+                    ANNOTATION.newInstance(NAME, type.eventName),
+                    ANNOTATION.newInstance(LABEL, type.label),
+                    ANNOTATION.newInstance(CATEGORY, new String[]{"Diagram"})
+            );
+            List<Object> fields = new ArrayList<>(type.fields.length);
+            for ( String field : type.fields ){
+                fields.add(VALUE.newInstance(long.class, field, new ArrayList<>()));
+            }
+            factory = (Object)CREATE.invokeExact((List<?>)annotations, (List<?>)fields);
+            eventTypes[type.ordinal()] = (Object)EVENT_TYPE.invokeExact(factory);
+            factories[type.ordinal()] = factory;
+        }
+        return factory;
+    }
+
+}
@@ -0,0 +1,100 @@
+package jp.seo.diagram.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 要素数に上限のあるキャッシュ. 上限を超えると最も長く参照されていない要素から破棄する.<br>
+ * キーのハッシュ値で複数の区画に分け、区画ごとに排他制御するので複数のスレッドから同時に参照できます.
+ * 値の計算は排他制御の外で行うため、同じキーを同時に要求した場合は複数回計算されることがある（最初の値を保持する）
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+final class LruCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    /**
+     * @param capacity 保持する要素の最大数
+     */
+    LruCache(int capacity){
+        if ( capacity <= 0 ){
+            throw new IllegalArgumentException("capacity must be positive : " + capacity);
+        }
+        int size = Math.min(MAX_SEGMENTS, Integer.highestOneBit(capacity));
+        segments = newSegments(size);
+        for ( int i=0 ; i<size ; i++ ){
+            // 区画の上限の合計がcapacityになるように割り振る
+            segments[i] = new Segment<>(capacity / size + (i < capacity % size ? 1 : 0));
+        }
+    }
+
+    private final Segment<K, V>[] segments;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> Segment<K, V>[] newSegments(int size){
+        return (Segment<K, V>[])new Segment[size];
+    }
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        Segment(int capacity){
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        private final int capacity;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest){
+            return size() > capacity;
+        }
+    }
+
+    private Segment<K, V> segmentOf(Object key){
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * @param loader キャッシュに無い場合に値を計算する. Nullを返した場合は保持しない
+     */
+    V get(K key, Function<? super K, ? extends V> loader){
+        final Segment<K, V> segment = segmentOf(key);
+        synchronized ( segment ){
+            V value = segment.get(key);
+            if ( value != null ) return value;
+        }
+        V value = loader.apply(key);
+        if ( value == null ) return null;
+        synchronized ( segment ){
+            V current = segment.putIfAbsent(key, value);
+            return current == null ? value : current;
+        }
+    }
+
+    void remove(Object key){
+        final Segment<K, V> segment = segmentOf(key);
+        synchronized ( segment ){
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * @return 現在保持している要素の数
+     */
+    int size(){
+        int size = 0;
+        for ( Segment<K, V> segment : segments ){
+            synchronized ( segment ){
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,308 @@
+package jp.seo.diagram.core;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * 要素の外接矩形を Sort-Tile-Recursive 法で詰めて構築したR木.<br>
+ * 各層の節点を中心のx座標で縦の帯に分け、帯ごとにy座標で並べて{@value #NODE_SIZE}個ずつ親の節点にまとめます.
+ * 節点の外接矩形と子の範囲はプリミティブ配列で保持し、構築後は変更しないので複数のスレッドから探索できます.
+ * <p>
+ * 配列上では要素の節点（葉）が先頭に、その上の層が順に続き、根が最後に位置します.
+ * 内部の節点の子は配列上で連続します
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+public final class PackedRTree<E> {
+
+    /**
+     * 節点の子の最大数
+     */
+    public static final int NODE_SIZE = 16;
+
+    /* これより少ない節点の層は並列に並べ替えない */
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    /**
+     * 外接矩形と重なる要素が探索範囲と実際に交わるか判定する
+     */
+    @FunctionalInterface
+    public interface Intersector<E> {
+
+        boolean intersects(E item, double left, double bottom, double right, double top);
+
+    }
+
+    /**
+     * 分割済みの図のボロノイ領域から構築する. 探索では領域の多角形と探索範囲が実際に交わるか判定する.<br>
+     * {@link VoronoiDiagram#setLazyAreas(int)}で遅延計算する図でも全ての領域を計算し、木が保持する
+     * @param diagram 分割済みの図
+     * @throws IllegalStateException 分割を計算していない場合
+     */
+    public static PackedRTree<VoronoiDiagram.VoronoiArea> ofVoronoiAreas(VoronoiDiagram diagram){
+        if ( diagram.getTriangles() == null ){
+            throw new IllegalStateException("not split yet");
+        }
+        Collection<VoronoiDiagram.VoronoiArea> areas = diagram.getVoronoiAreas();
+        VoronoiDiagram.VoronoiArea[] items = areas.toArray(new VoronoiDiagram.VoronoiArea[0]);
+        double[] boxes = new double[items.length * 4];
+        for ( int i=0 ; i<items.length ; i++ ){
+            setBounds(boxes, i, items[i].points);
+        }
+        return new PackedRTree<>(items, boxes, (area, l, b, r, t) -> intersectsConvex(area.points, l, b, r, t), diagram.getParallelism());
+    }
+
+    /**
+     * 分割済みの図の三角形から構築する. 探索では三角形と探索範囲が実際に交わるか判定する
+     * @param diagram 分割済みの図
+     * @throws IllegalStateException 分割を計算していない場合
+     */
+    public static PackedRTree<Triangle> ofTriangles(DelaunayDiagram diagram){
+        if ( diagram.getTriangles() == null ){
+            throw new IllegalStateException("not split yet");
+        }
+        Triangle[] items = diagram.getTriangles().toArray(new Triangle[0]);
+        double[] boxes = new double[items.length * 4];
+        Point[] vertices = new Point[3];
+        for ( int i=0 ; i<items.length ; i++ ){
+            vertices[0] = items[i].a;
+            vertices[1] = items[i].b;
+            vertices[2] = items[i].c;
+            setBounds(boxes, i, vertices);
+        }
+        return new PackedRTree<>(items, boxes, (triangle, l, b, r, t) ->
+                intersectsConvex(new Point[]{triangle.a, triangle.b, triangle.c}, l, b, r, t), diagram.getParallelism());
+    }
+
+    private static void setBounds(double[] boxes, int i, Point[] polygon){
+        double left = Double.POSITIVE_INFINITY, bottom = Double.POSITIVE_INFINITY;
+        double right = Double.NEGATIVE_INFINITY, top = Double.NEGATIVE_INFINITY;
+        for ( Point p : polygon ){
+            left = Math.min(left, p.getX());
+            right = Math.max(right, p.getX());
+            bottom = Math.min(bottom, p.getY());
+            top = Math.max(top, p.getY());
+        }
+        boxes[4*i] = left;
+        boxes[4*i+1] = bottom;
+        boxes[4*i+2] = right;
+        boxes[4*i+3] = top;
+    }
+
+    /**
+     * 凸多角形と矩形が交わるか判定する（分離軸定理）.
+     * 外接矩形が重なっていることを前提に、多角形の各辺の外側に矩形全体があるか調べる
+     */
+    static boolean intersectsConvex(Point[] polygon, double left, double bottom, double right, double top){
+        final int size = polygon.length;
+        double area = 0;
+        for ( int i=0 ; i<size ; i++ ){
+            Point a = polygon[i];
+            Point b = polygon[(i + 1) % size];
+            area += a.getX() * b.getY() - b.getX() * a.getY();
+        }
+        // 反時計回りなら内側は辺の左側
+        final double sign = area < 0 ? -1 : 1;
+        for ( int i=0 ; i<size ; i++ ){
+            Point a = polygon[i];
+            Point b = polygon[(i + 1) % size];
+            double dx = b.getX() - a.getX();
+            double dy = b.getY() - a.getY();
+            double max = Math.max(
+                    Math.max(cross(dx, dy, left - a.getX(), bottom - a.getY()), cross(dx, dy, right - a.getX(), bottom - a.getY())),
+                    Math.max(cross(dx, dy, right - a.getX(), top - a.getY()), cross(dx, dy, left - a.getX(), top - a.getY()))
+            );
+            double min = Math.min(
+                    Math.min(cross(dx, dy, left - a.getX(), bottom - a.getY()), cross(dx, dy, right - a.getX(), bottom - a.getY())),
+                    Math.min(cross(dx, dy, right - a.getX(), top - a.getY()), cross(dx, dy, left - a.getX(), top - a.getY()))
+            );
+            if ( sign > 0 ? max < 0 : min > 0 ) return false;
+        }
+        return true;
+    }
+
+    private static double cross(double ax, double ay, double bx, double by){
+        return ax * by - ay * bx;
+    }
+
+    /**
+     * @param items 要素
+     * @param boxes 各要素の外接矩形 {@code [left0, bottom0, right0, top0, left1, ...]}
+     * @param intersector 探索範囲と要素が実際に交わるか判定する. Nullなら外接矩形が重なる要素をすべて返す
+     * @param parallelism 構築に使うスレッド数
+     */
+    public PackedRTree(List<? extends E> items, double[] boxes, Intersector<? super E> intersector, int parallelism){
+        this(items.toArray(), boxes, intersector, parallelism);
+    }
+
+    private PackedRTree(Object[] items, double[] boxes, Intersector<? super E> intersector, int parallelism){
+        if ( boxes.length != items.length * 4 ){
+            throw new IllegalArgumentException(String.format(
+                    "boxes length %d does not match item size %d", boxes.length, items.length));
+        }
+        this.items = items;
+        this.intersector = intersector;
+        final int n = items.length;
+        // 節点の総数
+        int total = n;
+        int depth = 0;
+        for ( int size=n ; size>1 || (size == 1 && depth == 0) ; size=(size + NODE_SIZE - 1) / NODE_SIZE ){
+            total += (size + NODE_SIZE - 1) / NODE_SIZE;
+            depth++;
+        }
+        this.size = n;
+        this.depth = depth;
+        this.boxes = new double[total * 4];
+        this.children = new int[total];
+        this.ends = new int[total - n];
+
+        ForkJoinPool pool = parallelism > 1 && n >= PARALLEL_THRESHOLD ? new ForkJoinPool(parallelism) : null;
+        try {
+            // 葉 要素を並べ替えて配置する
+            int[] order = sortTiles(boxes, n, pool);
+            for ( int i=0 ; i<n ; i++ ){
+                int id = order[i];
+                System.arraycopy(boxes, 4*id, this.boxes, 4*i, 4);
+                children[i] = id;
+            }
+            int start = 0;
+            int size = n;
+            while ( start + size < total ){
+                // 子の層を NODE_SIZE 個ずつまとめる
+                final int parent = start + size;
+                final int count = (size + NODE_SIZE - 1) / NODE_SIZE;
+                double[] parentBoxes = new double[count * 4];
+                int[] first = new int[count];
+                int[] last = new int[count];
+                for ( int j=0 ; j<count ; j++ ){
+                    first[j] = start + j * NODE_SIZE;
+                    last[j] = Math.min(first[j] + NODE_SIZE, start + size);
+                    double left = Double.POSITIVE_INFINITY, bottom = Double.POSITIVE_INFINITY;
+                    double right = Double.NEGATIVE_INFINITY, top = Double.NEGATIVE_INFINITY;
+                    for ( int c=first[j] ; c<last[j] ; c++ ){
+                        left = Math.min(left, this.boxes[4*c]);
+                        bottom = Math.min(bottom, this.boxes[4*c+1]);
+                        right = Math.max(right, this.boxes[4*c+2]);
+                        top = Math.max(top, this.boxes[4*c+3]);
+                    }
+                    parentBoxes[4*j] = left;
+                    parentBoxes[4*j+1] = bottom;
+                    parentBoxes[4*j+2] = right;
+                    parentBoxes[4*j+3] = top;
+                }
+                // 子の範囲は節点が持つので、親の層の並びは次の層のために自由に並べ替えられる
+                order = sortTiles(parentBoxes, count, count >= PARALLEL_THRESHOLD ? pool : null);
+                for ( int j=0 ; j<count ; j++ ){
+                    int k = order[j];
+                    System.arraycopy(parentBoxes, 4*k, this.boxes, 4*(parent + j), 4);
+                    children[parent + j] = first[k];
+                    ends[parent + j - n] = last[k];
+                }
+                start = parent;
+                size = count;
+            }
+        } finally {
+            if ( pool != null ) pool.shutdown();
+        }
+    }
+
+    private final Object[] items;
+    private final Intersector<? super E> intersector;
+    private final int size;
+    private final int depth;
+    /* 節点の外接矩形 [left, bottom, right, top] */
+    private final double[] boxes;
+    /* 葉なら要素のindex、内部の節点なら最初の子の位置 */
+    private final int[] children;
+    /* 内部の節点の子の範囲の終端（含まない）. 位置は節点の位置 - 要素の数 */
+    private final int[] ends;
+
+    /**
+     * 外接矩形の中心で Sort-Tile-Recursive の順に並べる
+     * @param pool Nullでなければ帯ごとの並べ替えを並列に行う
+     * @return 並べ替えたindex
+     */
+    private static int[] sortTiles(double[] boxes, int count, ForkJoinPool pool){
+        final int[] ids = new int[count];
+        final double[] x = new double[count];
+        final double[] y = new double[count];
+        for ( int i=0 ; i<count ; i++ ){
+            ids[i] = i;
+            x[i] = boxes[4*i] + boxes[4*i+2];
+            y[i] = boxes[4*i+1] + boxes[4*i+3];
+        }
+        FlatTriangulation.quicksort(ids, x, 0, count - 1);
+        // 縦の帯の数は親の節点の数の平方根
+        final int nodes = (count + NODE_SIZE - 1) / NODE_SIZE;
+        final int slice = (int)Math.ceil(Math.sqrt(nodes)) * NODE_SIZE;
+        final int slices = (count + slice - 1) / Math.max(slice, 1);
+        IntConsumer task = s -> FlatTriangulation.quicksort(ids, y, s * slice, Math.min((s + 1) * slice, count) - 1);
+        if ( pool != null && slices > 1 ){
+            pool.submit(() -> IntStream.range(0, slices).parallel().forEach(task)).join();
+        }else{
+            IntStream.range(0, slices).forEach(task);
+        }
+        return ids;
+    }
+
+    /**
+     * 要素の数
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @param index 構築時に渡した要素のindex
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int index){
+        return (E)items[index];
+    }
+
+    /**
+     * 探索範囲と交わる要素を探す
+     * @param callback 見つけた要素を渡す. 順序は不定
+     */
+    public void search(double left, double bottom, double right, double top, Consumer<? super E> callback){
+        searchIndices(left, bottom, right, top, index -> callback.accept(get(index)));
+    }
+
+    /**
+     * @see #search(double, double, double, double, Consumer)
+     */
+    public void search(Rectangle window, Consumer<? super E> callback){
+        search(window.left, window.bottom, window.right, window.top, callback);
+    }
+
+    /**
+     * 探索範囲と交わる要素のindexを探す
+     * @param callback 見つけた要素の構築時のindexを渡す. 順序は不定
+     */
+    public void searchIndices(double left, double bottom, double right, double top, IntConsumer callback){
+        if ( size == 0 ) return;
+        // 深さ優先 各層で高々 NODE_SIZE 個ずつ積まれる
+        final int[] stack = new int[depth * NODE_SIZE + 1];
+        int sp = 0;
+        stack[sp++] = boxes.length / 4 - 1;
+        while ( sp > 0 ){
+            final int node = stack[--sp];
+            if ( boxes[4*node] > right || boxes[4*node+1] > top || boxes[4*node+2] < left || boxes[4*node+3] < bottom ){
+                continue;
+            }
+            if ( node < size ){
+                final int index = children[node];
+                if ( intersector == null || intersector.intersects(get(index), left, bottom, right, top) ){
+                    callback.accept(index);
+                }
+            }else{
+                for ( int c=children[node] ; c<ends[node - size] ; c++ ) stack[sp++] = c;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,279 @@
+package jp.seo.diagram.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 任意の点を含む三角形と最近傍の母点を探す索引.<br>
+ * 分割済みの三角形を最下層とし、その頂点を無作為に間引いて分割した三角形を順に重ねた階層（Delaunay hierarchy）を構築します.
+ * 探索は最上層から始め、各層で最近傍の頂点まで隣接する頂点を辿り、その頂点から一つ下の層で辿り直します.
+ * ドロネー分割では最近傍でない頂点には必ずより近い隣接頂点が存在するので、最下層で辿り着いた頂点が最近傍の母点です.
+ * 各層で辿る頂点数の期待値は定数なので、探索の期待計算量は O(log n) です.
+ * <p>
+ * 構築後は状態を変更しないので複数のスレッドから同時に探索できます.
+ * 探索結果は呼び出し側が用意した{@link Location}に書き込み、探索ごとにオブジェクトを生成しません
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+public final class PointLocator {
+
+    /**
+     * 上の層に残す頂点の割合の逆数
+     */
+    private static final int RATIO = 32;
+
+    /**
+     * 分割済みの図から索引を構築する
+     * @param diagram 分割済みの図
+     * @throws IllegalStateException 分割を計算していない場合
+     */
+    public PointLocator(DelaunayDiagram diagram){
+        this(toTriangulation(diagram));
+    }
+
+    /**
+     * 分割から索引を構築する
+     * @param triangulation 最下層とする分割
+     */
+    public PointLocator(FlatTriangulation triangulation){
+        List<FlatTriangulation> levels = new ArrayList<>();
+        List<int[]> down = new ArrayList<>();
+        levels.add(triangulation);
+        down.add(null);
+        // 乱数の種を固定して同じ入力から同じ索引を得る
+        Random random = new Random(triangulation.getPointSize());
+        FlatTriangulation current = triangulation;
+        while ( current.getTriangleSize() > RATIO ){
+            int[] in = current.getInEdges();
+            double[] coords = current.getCoordinates();
+            int[] sample = new int[in.length];
+            int size = 0;
+            for ( int i=0 ; i<in.length ; i++ ){
+                // 分割に含まれない重複点は除く
+                if ( in[i] >= 0 && random.nextInt(RATIO) == 0 ) sample[size++] = i;
+            }
+            double[] sampled = new double[size * 2];
+            for ( int i=0 ; i<size ; i++ ){
+                sampled[2*i] = coords[2*sample[i]];
+                sampled[2*i+1] = coords[2*sample[i]+1];
+            }
+            FlatTriangulation upper = new FlatTriangulation(sampled);
+            // 一直線上に並ぶなど分割できない場合はここで打ち切る
+            if ( upper.getTriangleSize() == 0 ) break;
+            levels.add(upper);
+            down.add(Arrays.copyOf(sample, size));
+            current = upper;
+        }
+        this.levels = levels.toArray(new FlatTriangulation[0]);
+        this.down = down.toArray(new int[0][]);
+        this.inedges = new int[this.levels.length][];
+        for ( int k=0 ; k<this.levels.length ; k++ ){
+            inedges[k] = this.levels[k].getInEdges();
+        }
+        // 遅延して生成される点と索引を探索前に確定させる
+        for ( int i=0 ; i<triangulation.getPointSize() ; i++ ) triangulation.getPoint(i);
+        FlatTriangulation top = this.levels[this.levels.length - 1];
+        start = top.getTriangleSize() > 0 ? top.getTriangleIndices()[0] : -1;
+    }
+
+    private static FlatTriangulation toTriangulation(DelaunayDiagram diagram){
+        if ( diagram.getTriangles() == null ){
+            throw new IllegalStateException("not split yet");
+        }
+        return FlatTriangulation.of(diagram.getTriangles());
+    }
+
+    /* levels[0]が最下層 */
+    private final FlatTriangulation[] levels;
+    /* down[k][i] : 層kの頂点iの層k-1でのindex */
+    private final int[][] down;
+    private final int[][] inedges;
+    /* 最上層で探索を始める頂点 */
+    private final int start;
+
+    /**
+     * 探索結果. スレッドごとに用意して使い回すことができます
+     */
+    public static final class Location {
+
+        private int site = -1;
+        private int triangle = -1;
+        private double distance = Double.NaN;
+
+        /**
+         * 最近傍の母点
+         * @return {@link PointLocator#getTriangulation()}での頂点のindex. 分割に三角形が無ければ-1
+         */
+        public int getSite(){
+            return site;
+        }
+
+        /**
+         * 点を含む三角形
+         * @return {@link PointLocator#getTriangulation()}での三角形のindex. 凸包の外側なら-1
+         */
+        public int getTriangle(){
+            return triangle;
+        }
+
+        /**
+         * 最近傍の母点までの距離
+         */
+        public double getDistance(){
+            return distance;
+        }
+
+    }
+
+    /**
+     * 最下層の分割. 探索結果のindexはこの分割のもの
+     */
+    public FlatTriangulation getTriangulation(){
+        return levels[0];
+    }
+
+    /**
+     * 層の数. 最下層を含む
+     */
+    public int getLevelSize(){
+        return levels.length;
+    }
+
+    /**
+     * 指定したindexの母点
+     * @param site {@link Location#getSite()}
+     */
+    public Point getSite(int site){
+        return levels[0].getPoint(site);
+    }
+
+    /**
+     * 最近傍の母点を探す
+     * @return 母点のindex. 分割に三角形が無ければ-1
+     */
+    public int findNearest(double x, double y){
+        if ( start < 0 ) return -1;
+        int v = start;
+        for ( int k=levels.length-1 ; k>0 ; k-- ){
+            v = down[k][walkNearest(k, v, x, y)];
+        }
+        return walkNearest(0, v, x, y);
+    }
+
+    /**
+     * 指定した母点から隣接する母点を辿って最近傍の母点を探す.<br>
+     * 直前の探索結果の近くを探索する場合は階層を辿るより速い
+     * @param hint 探索を始める母点のindex. 負数や範囲外、分割に含まれない重複点なら階層を辿る
+     * @return 母点のindex. 分割に三角形が無ければ-1
+     */
+    public int findNearest(double x, double y, int hint){
+        if ( hint < 0 || hint >= inedges[0].length || inedges[0][hint] < 0 ) return findNearest(x, y);
+        return walkNearest(0, hint, x, y);
+    }
+
+    /**
+     * 点を含む三角形と最近傍の母点を探す
+     * @param out 探索結果を書き込む
+     * @return 引数outと同じインスタンス
+     */
+    public Location locate(double x, double y, Location out){
+        int site = findNearest(x, y);
+        out.site = site;
+        if ( site < 0 ){
+            out.triangle = -1;
+            out.distance = Double.NaN;
+            return out;
+        }
+        double[] coords = levels[0].getCoordinates();
+        out.distance = Math.hypot(coords[2*site] - x, coords[2*site+1] - y);
+        // 最近傍の母点を頂点に持つ三角形から辿る
+        out.triangle = walkTriangle(inedges[0][site] / 3, x, y);
+        return out;
+    }
+
+    /**
+     * @see #locate(double, double, Location)
+     */
+    public Location locate(Point point, Location out){
+        return locate(point.getX(), point.getY(), out);
+    }
+
+    /**
+     * より近い隣接頂点が無くなるまで辿る
+     */
+    private int walkNearest(int level, int v, double x, double y){
+        final FlatTriangulation mesh = levels[level];
+        final double[] coords = mesh.getCoordinates();
+        final int[] triangles = mesh.getTriangleIndices();
+        final int[] halfedges = mesh.getHalfEdges();
+        final int[] in = inedges[level];
+        double min = distance(coords, v, x, y);
+        boolean moved = true;
+        while ( moved ){
+            moved = false;
+            final int first = in[v];
+            int e = first;
+            do {
+                // e: ? -> v
+                int next = FlatTriangulation.nextHalfEdge(e);
+                int u = triangles[e];
+                double d = distance(coords, u, x, y);
+                if ( d < min ){
+                    min = d;
+                    v = u;
+                    moved = true;
+                    break;
+                }
+                e = halfedges[next];
+                if ( e == -1 ){
+                    // 凸包上の頂点 反対側の端の隣接頂点
+                    u = triangles[FlatTriangulation.nextHalfEdge(next)];
+                    d = distance(coords, u, x, y);
+                    if ( d < min ){
+                        min = d;
+                        v = u;
+                        moved = true;
+                    }
+                    break;
+                }
+            } while ( e != first );
+        }
+        return v;
+    }
+
+    /**
+     * 点が外側にある辺を越えて隣の三角形へ進む（visibility walk）.
+     * ドロネー分割では必ず停止する
+     * @return 凸包の外側なら-1
+     */
+    private int walkTriangle(int t, double x, double y){
+        final FlatTriangulation mesh = levels[0];
+        final double[] coords = mesh.getCoordinates();
+        final int[] triangles = mesh.getTriangleIndices();
+        final int[] halfedges = mesh.getHalfEdges();
+        loop:
+        while ( true ){
+            for ( int e=3*t ; e<3*t+3 ; e++ ){
+                int a = triangles[e];
+                int b = triangles[FlatTriangulation.nextHalfEdge(e)];
+                // 三角形は時計回り 左側が外側
+                if ( Predicates.orient2d(coords[2*a], coords[2*a+1], coords[2*b], coords[2*b+1], x, y) > 0 ){
+                    int twin = halfedges[e];
+                    if ( twin < 0 ) return -1;
+                    t = twin / 3;
+                    continue loop;
+                }
+            }
+            return t;
+        }
+    }
+
+    private static double distance(double[] coords, int i, double x, double y){
+        double dx = coords[2*i] - x;
+        double dy = coords[2*i+1] - y;
+        return dx * dx + dy * dy;
+    }
+
+}
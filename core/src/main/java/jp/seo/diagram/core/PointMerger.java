@@ -0,0 +1,70 @@
+package jp.seo.diagram.core;
+
+import java.util.*;
+
+/**
+ * 許容誤差の範囲内で近接する母点をひとつの代表点にまとめる.<br>
+ * x座標の昇順に走査しながら、x座標が許容誤差の範囲内にある代表点をy座標の順に保持し、
+ * その中から近傍を探すので{@code O(n log n)}で計算します.
+ * 代表点どうしは許容誤差より離れているので、ひとつの点について調べる代表点の数は定数で抑えられます
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+final class PointMerger {
+
+    private PointMerger(){}
+
+    private static final Comparator<Point> BY_Y = (p1, p2) -> {
+        int c = Double.compare(p1.getY(), p2.getY());
+        return c != 0 ? c : Double.compare(p1.getX(), p2.getX());
+    };
+
+    /**
+     * 近接する点をまとめる
+     * @param points 母点
+     * @param tolerance 許容誤差 この距離以内の点はまとめる. 0なら座標値が一致する点のみ
+     * @param representatives 代表点と座標値の異なる点から代表点へのマッピングを追加する
+     * @return 代表点の集合. 各点はx座標の小さい順に最初に現れた点を代表点とする
+     */
+    static Set<Point> merge(Collection<? extends Point> points, double tolerance, Map<Point, Point> representatives){
+        if ( !(tolerance >= 0) ){
+            throw new IllegalArgumentException("invalid tolerance : " + tolerance);
+        }
+        Point[] sorted = points.toArray(new Point[0]);
+        Arrays.sort(sorted, Point::compare);
+        Set<Point> result = new HashSet<>(sorted.length * 2);
+        TreeSet<Point> active = new TreeSet<>(BY_Y);
+        ArrayDeque<Point> window = new ArrayDeque<>();
+        final double square = tolerance * tolerance;
+        for ( Point point : sorted ){
+            final double x = point.getX();
+            final double y = point.getY();
+            // x座標が範囲外になった代表点を除く
+            while ( !window.isEmpty() && window.peekFirst().getX() < x - tolerance ){
+                active.remove(window.pollFirst());
+            }
+            Point nearest = null;
+            double min = square;
+            for ( Point other : active.subSet(
+                    new BasePoint(Double.NEGATIVE_INFINITY, y - tolerance), true,
+                    new BasePoint(Double.POSITIVE_INFINITY, y + tolerance), true) ){
+                double dx = other.getX() - x;
+                double dy = other.getY() - y;
+                double distance = dx * dx + dy * dy;
+                if ( distance <= min ){
+                    min = distance;
+                    nearest = other;
+                }
+            }
+            if ( nearest == null ){
+                result.add(point);
+                active.add(point);
+                window.addLast(point);
+            }else if ( !nearest.equals(point) ){
+                representatives.put(point, nearest);
+            }
+        }
+        return result;
+    }
+
+}
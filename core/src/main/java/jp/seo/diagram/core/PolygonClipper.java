@@ -0,0 +1,395 @@
+package jp.seo.diagram.core;
+
+import java.util.*;
+
+/**
+ * 凸多角形を境界の多角形の内側に切り取る.<br>
+ * 境界は複数の多角形からなり、偶奇規則で内側を判定する（他の多角形の内側にある多角形は穴になる）.
+ * 内側を左手に見る向きに各多角形の頂点を並べ直し、辺を一様な格子で索引するので、
+ * 切り取る多角形の近くにある辺のみと交差を判定します.
+ * 構築後は変更しないので複数のスレッドから同時に呼び出せる
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+final class PolygonClipper {
+
+    /**
+     * @param boundary 自己交差しない多角形. 頂点が3未満の多角形は無視する
+     */
+    PolygonClipper(List<Polygon> boundary){
+        int size = 0;
+        for ( Polygon polygon : boundary ){
+            if ( polygon.size() >= 3 ) size += polygon.size();
+        }
+        if ( size == 0 ){
+            throw new IllegalArgumentException("empty boundary");
+        }
+        xs = new double[size];
+        ys = new double[size];
+        next = new int[size];
+        ring = new int[size];
+        List<int[]> ranges = new ArrayList<>();
+        int i = 0;
+        for ( Polygon polygon : boundary ){
+            if ( polygon.size() < 3 ) continue;
+            int start = i;
+            for ( Point p : polygon ){
+                xs[i] = p.getX();
+                ys[i] = p.getY();
+                ring[i] = ranges.size();
+                next[i] = i + 1;
+                i++;
+            }
+            next[i - 1] = start;
+            ranges.add(new int[]{start, i});
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for ( i=0 ; i<size ; i++ ){
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        // 区画あたりの辺の数が定数程度になるように分ける
+        double aspect = (maxX - minX) / (maxY - minY);
+        columns = gridSize(Math.sqrt(size * aspect), size);
+        rows = gridSize(Math.sqrt(size / aspect), size);
+        cellWidth = (maxX - minX) / columns;
+        cellHeight = (maxY - minY) / rows;
+        buildIndex();
+        // 他の多角形の内側に偶数回含まれるなら反時計回り、奇数回なら時計回りに並べる.
+        // 並べ替えると索引が変わるので、すべての多角形の向きを判定してから並べ替える
+        boolean[] flip = new boolean[ranges.size()];
+        boolean reversed = false;
+        for ( int r=0 ; r<ranges.size() ; r++ ){
+            int start = ranges.get(r)[0];
+            int end = ranges.get(r)[1];
+            double area = 0;
+            for ( i=start ; i<end ; i++ ){
+                area += xs[i] * ys[next[i]] - xs[next[i]] * ys[i];
+            }
+            boolean hole = countCrossings(xs[start], ys[start], r) % 2 != 0;
+            flip[r] = hole == (area > 0);
+            reversed |= flip[r];
+        }
+        for ( int r=0 ; r<ranges.size() ; r++ ){
+            if ( flip[r] ) reverse(ranges.get(r)[0], ranges.get(r)[1]);
+        }
+        if ( reversed ) buildIndex();
+    }
+
+    /* 境界の頂点. 辺iは頂点iから頂点next[i]へ向かい、内側を左手に見る */
+    private final double[] xs, ys;
+    private final int[] next, ring;
+
+    private final double minX, minY, maxX, maxY;
+    private final int columns, rows;
+    private final double cellWidth, cellHeight;
+    /* 格子の各区画と交差しうる辺. 区画kの辺は cellEdges[cellStart[k], cellStart[k+1]) */
+    private int[] cellStart, cellEdges;
+
+    private static int gridSize(double value, int max){
+        return Double.isNaN(value) ? 1 : (int)Math.max(1, Math.min(max, Math.ceil(value)));
+    }
+
+    private void reverse(int start, int end){
+        for ( int i=start, j=end-1 ; i<j ; i++, j-- ){
+            double x = xs[i];
+            xs[i] = xs[j];
+            xs[j] = x;
+            double y = ys[i];
+            ys[i] = ys[j];
+            ys[j] = y;
+        }
+    }
+
+    private void buildIndex(){
+        final int size = xs.length;
+        int[] start = new int[columns * rows + 1];
+        for ( int e=0 ; e<size ; e++ ){
+            int c0 = column(Math.min(xs[e], xs[next[e]]));
+            int c1 = column(Math.max(xs[e], xs[next[e]]));
+            int r0 = row(Math.min(ys[e], ys[next[e]]));
+            int r1 = row(Math.max(ys[e], ys[next[e]]));
+            for ( int r=r0 ; r<=r1 ; r++ ){
+                for ( int c=c0 ; c<=c1 ; c++ ) start[r * columns + c + 1]++;
+            }
+        }
+        for ( int k=0 ; k<columns*rows ; k++ ) start[k + 1] += start[k];
+        int[] edges = new int[start[columns * rows]];
+        int[] position = Arrays.copyOf(start, columns * rows);
+        for ( int e=0 ; e<size ; e++ ){
+            int c0 = column(Math.min(xs[e], xs[next[e]]));
+            int c1 = column(Math.max(xs[e], xs[next[e]]));
+            int r0 = row(Math.min(ys[e], ys[next[e]]));
+            int r1 = row(Math.max(ys[e], ys[next[e]]));
+            for ( int r=r0 ; r<=r1 ; r++ ){
+                for ( int c=c0 ; c<=c1 ; c++ ) edges[position[r * columns + c]++] = e;
+            }
+        }
+        cellStart = start;
+        cellEdges = edges;
+    }
+
+    private int column(double x){
+        int c = cellWidth > 0 ? (int)((x - minX) / cellWidth) : 0;
+        return Math.max(0, Math.min(columns - 1, c));
+    }
+
+    private int row(double y){
+        int r = cellHeight > 0 ? (int)((y - minY) / cellHeight) : 0;
+        return Math.max(0, Math.min(rows - 1, r));
+    }
+
+    /**
+     * 境界と母点をすべて内部に含む矩形. 境界との間に余白をとる
+     */
+    Rectangle getBorder(Collection<? extends Point> points){
+        double left = minX, right = maxX, bottom = minY, top = maxY;
+        for ( Point p : points ){
+            left = Math.min(left, p.getX());
+            right = Math.max(right, p.getX());
+            bottom = Math.min(bottom, p.getY());
+            top = Math.max(top, p.getY());
+        }
+        double margin = Math.max(Math.max(right - left, top - bottom) * 0.05, Setting.error);
+        return new Rectangle(left - margin, top + margin, right + margin, bottom - margin);
+    }
+
+    /**
+     * 点から右向きの半直線と交差する辺の数
+     * @param exclude この番号の多角形の辺は数えない
+     */
+    private int countCrossings(double x, double y, int exclude){
+        if ( y < minY || y > maxY || x > maxX ) return 0;
+        final int r = row(y);
+        int cnt = 0;
+        for ( int c=column(x) ; c<columns ; c++ ){
+            final int k = r * columns + c;
+            for ( int j=cellStart[k] ; j<cellStart[k + 1] ; j++ ){
+                final int e = cellEdges[j];
+                if ( ring[e] == exclude ) continue;
+                final double ay = ys[e], by = ys[next[e]];
+                if ( (ay > y) == (by > y) ) continue;
+                final double ax = xs[e], bx = xs[next[e]];
+                final double cross = ax + (y - ay) * (bx - ax) / (by - ay);
+                // 複数の区画に登録された辺は交点を含む区画でのみ数える
+                if ( cross > x && column(cross) == c ) cnt++;
+            }
+        }
+        return cnt;
+    }
+
+    /**
+     * @return 点が境界の内側にあるならtrue
+     */
+    boolean contains(double x, double y){
+        return countCrossings(x, y, -1) % 2 != 0;
+    }
+
+    /**
+     * 凸多角形と境界の内側との共通部分を求める
+     * @param cell 反時計回りの凸多角形
+     * @return 反時計回りの外周と時計回りの穴. 共通部分が無ければ空の配列
+     */
+    Polygon[] clip(Point[] cell){
+        final int m = cell.length;
+        final double[] cx = new double[m];
+        final double[] cy = new double[m];
+        double left = Double.POSITIVE_INFINITY, right = Double.NEGATIVE_INFINITY;
+        double bottom = Double.POSITIVE_INFINITY, top = Double.NEGATIVE_INFINITY;
+        for ( int k=0 ; k<m ; k++ ){
+            cx[k] = cell[k].getX();
+            cy[k] = cell[k].getY();
+            left = Math.min(left, cx[k]);
+            right = Math.max(right, cx[k]);
+            bottom = Math.min(bottom, cy[k]);
+            top = Math.max(top, cy[k]);
+        }
+        if ( right < minX || left > maxX || top < minY || bottom > maxY ){
+            return new Polygon[0];
+        }
+        // 近くにある辺
+        final int c0 = column(left), c1 = column(right), r0 = row(bottom), r1 = row(top);
+        int cnt = 0;
+        for ( int r=r0 ; r<=r1 ; r++ ){
+            cnt += cellStart[r * columns + c1 + 1] - cellStart[r * columns + c0];
+        }
+        int[] candidates = new int[cnt];
+        cnt = 0;
+        for ( int r=r0 ; r<=r1 ; r++ ){
+            int from = cellStart[r * columns + c0];
+            int to = cellStart[r * columns + c1 + 1];
+            System.arraycopy(cellEdges, from, candidates, cnt, to - from);
+            cnt += to - from;
+        }
+        Arrays.sort(candidates);
+        int size = 0;
+        for ( int j=0 ; j<cnt ; j++ ){
+            if ( size == 0 || candidates[size - 1] != candidates[j] ) candidates[size++] = candidates[j];
+        }
+        // 各辺のうち凸多角形の内側にある区間 [t0, t1]
+        final double[] t0 = new double[size];
+        final double[] t1 = new double[size];
+        boolean any = false;
+        for ( int j=0 ; j<size ; j++ ){
+            if ( clipEdge(candidates[j], cx, cy, t0, t1, j) ) any = true;
+        }
+        List<Polygon> result = new ArrayList<>();
+        if ( !any ){
+            if ( contains(cx[0], cy[0]) ) result.add(new Polygon(Arrays.asList(cell)));
+            return result.toArray(new Polygon[0]);
+        }
+        // 内側の区間を辿って繋がった列にまとめる
+        final int[] successor = new int[size];
+        final boolean[] head = new boolean[size];
+        Arrays.fill(head, true);
+        for ( int j=0 ; j<size ; j++ ){
+            successor[j] = -1;
+            if ( Double.isNaN(t0[j]) || t1[j] < 1 ) continue;
+            int k = Arrays.binarySearch(candidates, 0, size, next[candidates[j]]);
+            if ( k >= 0 && !Double.isNaN(t0[k]) && t0[k] == 0 ){
+                successor[j] = k;
+                head[k] = false;
+            }
+        }
+        final boolean[] visited = new boolean[size];
+        final List<List<Point>> chains = new ArrayList<>();
+        for ( int j=0 ; j<size ; j++ ){
+            if ( !head[j] || Double.isNaN(t0[j]) ) continue;
+            List<Point> chain = new ArrayList<>();
+            chain.add(pointAt(candidates[j], t0[j]));
+            for ( int k=j ; k>=0 ; k=successor[k] ){
+                visited[k] = true;
+                chain.add(pointAt(candidates[k], t1[k]));
+            }
+            chains.add(chain);
+        }
+        // 凸多角形の内側で閉じている多角形
+        for ( int j=0 ; j<size ; j++ ){
+            if ( visited[j] || Double.isNaN(t0[j]) ) continue;
+            List<Point> list = new ArrayList<>();
+            for ( int k=j ; !visited[k] ; k=successor[k] ){
+                visited[k] = true;
+                list.add(pointAt(candidates[k], t0[k]));
+            }
+            if ( list.size() >= 3 ) result.add(new Polygon(list));
+        }
+        if ( chains.isEmpty() ){
+            if ( contains(cx[0], cy[0]) ) result.add(new Polygon(Arrays.asList(cell)));
+            return result.toArray(new Polygon[0]);
+        }
+        // 列の終点から凸多角形の周上を反時計回りに次の列の始点まで辿る
+        final int n = chains.size();
+        final double[] enter = new double[n];
+        final double[] exit = new double[n];
+        for ( int j=0 ; j<n ; j++ ){
+            List<Point> chain = chains.get(j);
+            enter[j] = perimeterOf(chain.get(0), cx, cy);
+            exit[j] = perimeterOf(chain.get(chain.size() - 1), cx, cy);
+        }
+        final boolean[] used = new boolean[n];
+        for ( int j=0 ; j<n ; j++ ){
+            if ( used[j] ) continue;
+            List<Point> list = new ArrayList<>();
+            int current = j;
+            while ( true ){
+                used[current] = true;
+                list.addAll(chains.get(current));
+                double s = exit[current];
+                int following = -1;
+                double distance = Double.POSITIVE_INFINITY;
+                for ( int k=0 ; k<n ; k++ ){
+                    if ( used[k] && k != j ) continue;
+                    double d = ((enter[k] - s) % m + m) % m;
+                    if ( d < distance ){
+                        distance = d;
+                        following = k;
+                    }
+                }
+                for ( int k=(int)Math.floor(s) + 1, step=0 ; step<m ; k++, step++ ){
+                    double d = ((k - s) % m + m) % m;
+                    if ( d >= distance ) break;
+                    list.add(cell[k % m]);
+                }
+                if ( following == j || following < 0 ) break;
+                current = following;
+            }
+            if ( list.size() >= 3 ) result.add(new Polygon(list));
+        }
+        return result.toArray(new Polygon[0]);
+    }
+
+    /**
+     * 境界の辺のうち凸多角形の内側にある区間を求める（Cyrus-Beck法）
+     * @return 内側に長さのある区間が無いならfalse. そのとき区間はNaN
+     */
+    private boolean clipEdge(int e, double[] cx, double[] cy, double[] t0, double[] t1, int j){
+        final int m = cx.length;
+        final double px = xs[e], py = ys[e];
+        final double dx = xs[next[e]] - px, dy = ys[next[e]] - py;
+        double from = 0, to = 1;
+        for ( int k=0 ; k<m && from < to ; k++ ){
+            int l = (k + 1) % m;
+            double ex = cx[l] - cx[k], ey = cy[l] - cy[k];
+            // 辺kの左側が内側
+            double numerator = ex * (py - cy[k]) - ey * (px - cx[k]);
+            double denominator = ex * dy - ey * dx;
+            if ( denominator == 0 ){
+                if ( numerator < 0 ) from = to;
+            }else{
+                double t = -numerator / denominator;
+                if ( denominator > 0 ){
+                    from = Math.max(from, t);
+                }else{
+                    to = Math.min(to, t);
+                }
+            }
+        }
+        if ( from < to ){
+            t0[j] = from;
+            t1[j] = to;
+            return true;
+        }
+        t0[j] = Double.NaN;
+        t1[j] = Double.NaN;
+        return false;
+    }
+
+    private Point pointAt(int e, double t){
+        if ( t == 0 ) return new BasePoint(xs[e], ys[e]);
+        if ( t == 1 ) return new BasePoint(xs[next[e]], ys[next[e]]);
+        return new BasePoint(xs[e] + (xs[next[e]] - xs[e]) * t, ys[e] + (ys[next[e]] - ys[e]) * t);
+    }
+
+    /**
+     * 凸多角形の周上の点の位置
+     * @return 辺kの上なら {@code k + (辺上の割合)}
+     */
+    private static double perimeterOf(Point p, double[] cx, double[] cy){
+        final int m = cx.length;
+        double best = Double.POSITIVE_INFINITY;
+        double value = 0;
+        for ( int k=0 ; k<m ; k++ ){
+            int l = (k + 1) % m;
+            double ex = cx[l] - cx[k], ey = cy[l] - cy[k];
+            double length = ex * ex + ey * ey;
+            double t = length > 0 ? ((p.getX() - cx[k]) * ex + (p.getY() - cy[k]) * ey) / length : 0;
+            t = Math.max(0, Math.min(1, t));
+            double dx = cx[k] + ex * t - p.getX();
+            double dy = cy[k] + ey * t - p.getY();
+            double d = dx * dx + dy * dy;
+            if ( d < best ){
+                best = d;
+                value = t < 1 ? k + t : l;
+            }
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,130 @@
+package jp.seo.diagram.core;
+
+import java.math.BigDecimal;
+
+/**
+ * 誤差に頑健な幾何判定.<br>
+ * まず浮動小数点数で計算し、丸め誤差の上界と比べて符号が確定しない場合のみ厳密な有理数演算で計算し直します.
+ * 返値は符号のみが意味を持ち、0判定に{@link Setting#error}の値は用いません
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+public final class Predicates {
+
+    //base algorithm is retrieved from
+    //J. R. Shewchuk, "Adaptive Precision Floating-Point Arithmetic and Fast Robust Geometric Predicates"
+    //https://www.cs.cmu.edu/~quake/robust.html
+
+    private Predicates(){}
+
+    private static final double EPSILON = Math.ulp(1.0) / 2;
+    private static final double CCW_ERROR_BOUND = (3.0 + 16.0 * EPSILON) * EPSILON;
+    private static final double IN_CIRCLE_ERROR_BOUND = (10.0 + 96.0 * EPSILON) * EPSILON;
+
+    /**
+     * 三点a,b,cの位置関係を判定する
+     * @return 反時計回りなら正、時計回りなら負、一直線上なら0
+     */
+    public static double orient2d(double ax, double ay, double bx, double by, double cx, double cy){
+        double detLeft = (ax - cx) * (by - cy);
+        double detRight = (ay - cy) * (bx - cx);
+        double det = detLeft - detRight;
+        double detSum;
+        if ( detLeft > 0 ){
+            if ( detRight <= 0 ) return det;
+            detSum = detLeft + detRight;
+        }else if ( detLeft < 0 ){
+            if ( detRight >= 0 ) return det;
+            detSum = -detLeft - detRight;
+        }else{
+            return det;
+        }
+        double bound = CCW_ERROR_BOUND * detSum;
+        if ( det >= bound || -det >= bound ) return det;
+        return orient2dExact(ax, ay, bx, by, cx, cy);
+    }
+
+    public static double orient2d(Point a, Point b, Point c){
+        return orient2d(a.getX(), a.getY(), b.getX(), b.getY(), c.getX(), c.getY());
+    }
+
+    /**
+     * 三点a,b,cを通る円に対する点dの位置関係を判定する
+     * @return a,b,cが反時計回りの場合、円の内部なら正、外部なら負、円周上なら0.
+     * 時計回りなら符号は逆になる
+     */
+    public static double inCircle(double ax, double ay, double bx, double by, double cx, double cy, double dx, double dy){
+        double adx = ax - dx;
+        double ady = ay - dy;
+        double bdx = bx - dx;
+        double bdy = by - dy;
+        double cdx = cx - dx;
+        double cdy = cy - dy;
+
+        double bdxcdy = bdx * cdy;
+        double cdxbdy = cdx * bdy;
+        double alift = adx * adx + ady * ady;
+
+        double cdxady = cdx * ady;
+        double adxcdy = adx * cdy;
+        double blift = bdx * bdx + bdy * bdy;
+
+        double adxbdy = adx * bdy;
+        double bdxady = bdx * ady;
+        double clift = cdx * cdx + cdy * cdy;
+
+        double det = alift * (bdxcdy - cdxbdy)
+                + blift * (cdxady - adxcdy)
+                + clift * (adxbdy - bdxady);
+        double permanent = (Math.abs(bdxcdy) + Math.abs(cdxbdy)) * alift
+                + (Math.abs(cdxady) + Math.abs(adxcdy)) * blift
+                + (Math.abs(adxbdy) + Math.abs(bdxady)) * clift;
+        double bound = IN_CIRCLE_ERROR_BOUND * permanent;
+        if ( det > bound || -det > bound ) return det;
+        return inCircleExact(ax, ay, bx, by, cx, cy, dx, dy);
+    }
+
+    public static double inCircle(Point a, Point b, Point c, Point d){
+        return inCircle(a.getX(), a.getY(), b.getX(), b.getY(), c.getX(), c.getY(), d.getX(), d.getY());
+    }
+
+    /**
+     * 点dが三点a,b,cを通る円の内部に含まれるか判定する. 三点の向きは問わない
+     * @return 円周上は含まない
+     */
+    public static boolean inCircumcircle(Point a, Point b, Point c, Point d){
+        double orient = orient2d(a, b, c);
+        if ( orient == 0 ) return false;
+        double value = inCircle(a, b, c, d);
+        return orient > 0 ? value > 0 : value < 0;
+    }
+
+    private static double orient2dExact(double ax, double ay, double bx, double by, double cx, double cy){
+        BigDecimal acx = exact(ax).subtract(exact(cx));
+        BigDecimal bcy = exact(by).subtract(exact(cy));
+        BigDecimal acy = exact(ay).subtract(exact(cy));
+        BigDecimal bcx = exact(bx).subtract(exact(cx));
+        return acx.multiply(bcy).subtract(acy.multiply(bcx)).signum();
+    }
+
+    private static double inCircleExact(double ax, double ay, double bx, double by, double cx, double cy, double dx, double dy){
+        BigDecimal adx = exact(ax).subtract(exact(dx));
+        BigDecimal ady = exact(ay).subtract(exact(dy));
+        BigDecimal bdx = exact(bx).subtract(exact(dx));
+        BigDecimal bdy = exact(by).subtract(exact(dy));
+        BigDecimal cdx = exact(cx).subtract(exact(dx));
+        BigDecimal cdy = exact(cy).subtract(exact(dy));
+        BigDecimal alift = adx.multiply(adx).add(ady.multiply(ady));
+        BigDecimal blift = bdx.multiply(bdx).add(bdy.multiply(bdy));
+        BigDecimal clift = cdx.multiply(cdx).add(cdy.multiply(cdy));
+        BigDecimal det = alift.multiply(bdx.multiply(cdy).subtract(cdx.multiply(bdy)))
+                .add(blift.multiply(cdx.multiply(ady).subtract(adx.multiply(cdy))))
+                .add(clift.multiply(adx.multiply(bdy).subtract(bdx.multiply(ady))));
+        return det.signum();
+    }
+
+    private static BigDecimal exact(double value){
+        return new BigDecimal(value);
+    }
+
+}
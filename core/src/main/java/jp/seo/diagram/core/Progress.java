@@ -0,0 +1,58 @@
+package jp.seo.diagram.core;
+
+/**
+ * ひとつの段階の進捗を間引いて{@link DiagramListener}へ通知し、経過時間を計測する.<br>
+ * Flight Recorderで記録中なら段階ごとに{@link JfrEvents}のイベントも記録します
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+final class Progress {
+
+    /**
+     * ひとつの段階で進捗を通知する最大の回数
+     */
+    static final int STEPS = 100;
+
+    Progress(DiagramListener listener, DiagramListener.Phase phase, int total){
+        this.listener = listener;
+        this.phase = phase;
+        this.total = total;
+        this.step = Math.max(1, total / STEPS);
+        this.next = step;
+        this.event = JfrEvents.begin(JfrEvents.Type.of(phase));
+        this.start = System.nanoTime();
+    }
+
+    private final DiagramListener listener;
+    private final DiagramListener.Phase phase;
+    private final int total;
+    private final int step;
+    private final long start;
+    private final Object event;
+    private int next;
+
+    /**
+     * @param done 処理済みの個数
+     */
+    void update(int done){
+        if ( done >= next ){
+            next = done + step;
+            listener.onProgress(phase, done, total);
+        }
+    }
+
+    /**
+     * 段階の終了を通知して経過時間を集計する
+     * @param count 処理した個数
+     * @param metrics 経過時間を加算する. nullなら加算しない
+     * @return 経過時間(ns)
+     */
+    long complete(int count, DiagramListener.Metrics metrics){
+        long elapsed = System.nanoTime() - start;
+        JfrEvents.commit(event, total, count);
+        if ( metrics != null ) metrics.durations[phase.ordinal()] += elapsed;
+        listener.onPhaseCompleted(phase, count, elapsed);
+        return elapsed;
+    }
+
+}
@@ -15,6 +15,14 @@ public class Rectangle {
 
     public final double left,top,right,bottom;
 
+    /**
+     * 指定された点がこの矩形に含まれるか判定します
+     * <strong>NOTE </strong>矩形の辺上も含みます
+     */
+    public boolean containsPoint(Point p){
+        return left <= p.getX() && p.getX() <= right && bottom <= p.getY() && p.getY() <= top;
+    }
+
     public Triangle getContainer(){
         double x = (left + right) / 2;
         double y = (top + bottom) / 2;
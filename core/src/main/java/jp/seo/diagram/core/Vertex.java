@@ -0,0 +1,70 @@
+package jp.seo.diagram.core;
+
+/**
+ * 逐次追加法の計算途中の分割における頂点.<br>
+ * 母点に連番のindexを割り当て、座標値を保持します.
+ * 同値判定・ハッシュ値は座標値による{@link Point}の定義に従うので元の母点とも一致します
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+final class Vertex extends Point {
+
+    Vertex(Point point, int id){
+        this.point = point;
+        this.id = id;
+        this.x = point.getX();
+        this.y = point.getY();
+        this.hash = super.hashCode();
+    }
+
+    /**
+     * 元の母点
+     */
+    final Point point;
+
+    /**
+     * 分割内で一意な連番
+     */
+    final int id;
+
+    private final double x, y;
+    private final int hash;
+
+    /**
+     * 計算途中の頂点なら元の母点を取得する
+     * @return 頂点でなければ引数そのもの
+     */
+    static Point source(Point point){
+        return point instanceof Vertex ? ((Vertex)point).point : point;
+    }
+
+    @Override
+    public double getX(){
+        return x;
+    }
+
+    @Override
+    public double getY(){
+        return y;
+    }
+
+    @Override
+    public boolean equals(Object other){
+        if ( other instanceof Vertex ){
+            // 同じ分割内で座標値の一致する頂点は存在しない
+            return id == ((Vertex)other).id;
+        }
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode(){
+        return hash;
+    }
+
+    @Override
+    public String toString(){
+        return point.toString();
+    }
+
+}
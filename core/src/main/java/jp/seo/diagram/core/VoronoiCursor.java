@@ -0,0 +1,148 @@
+package jp.seo.diagram.core;
+
+/**
+ * 連続する点列（軌跡）が属するボロノイ領域を順に求める.<br>
+ * 各点の探索は直前の結果の母点から始めてドロネー分割の隣接する母点を辿るので、
+ * 連続する点が同じ領域か隣の領域にある限り一点あたり償却 O(1) で求まります.
+ * 属する領域が変わると{@link Listener}に領域から出る・入るイベントを通知します.
+ * <p>
+ * 状態を持つので一つの軌跡ごとに用意し、複数のスレッドで共有しないでください.
+ * 索引{@link PointLocator}は複数のカーソルで共有できます
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+public final class VoronoiCursor {
+
+    /**
+     * 領域の出入りを受け取る.<br>
+     * 何もしないデフォルト実装を持つので必要なメソッドのみ実装すればよい
+     */
+    public interface Listener {
+
+        /**
+         * 何もしないリスナー
+         */
+        Listener NONE = new Listener() {};
+
+        /**
+         * 領域に入ったことを通知する
+         * @param site 領域の母点
+         * @param sample 何番目の点で入ったか. 0から数える
+         */
+        default void onEnter(Point site, long sample){}
+
+        /**
+         * 領域から出たことを通知する. 続けて次の領域の{@link #onEnter(Point, long)}が呼ばれる
+         * @param site 領域の母点
+         * @param sample 何番目の点で出たか. 0から数える
+         */
+        default void onExit(Point site, long sample){}
+
+    }
+
+    /**
+     * @param diagram 分割済みの図
+     * @throws IllegalStateException 分割を計算していない場合
+     */
+    public VoronoiCursor(VoronoiDiagram diagram){
+        this(diagram, new PointLocator(diagram));
+    }
+
+    /**
+     * @param diagram 分割済みの図
+     * @param locator 同じ図から構築した索引
+     */
+    public VoronoiCursor(VoronoiDiagram diagram, PointLocator locator){
+        this.diagram = diagram;
+        this.locator = locator;
+    }
+
+    private final VoronoiDiagram diagram;
+    private final PointLocator locator;
+    private Listener listener = Listener.NONE;
+    private double hysteresis = 0;
+
+    private int current = -1;
+    private long sample = 0;
+
+    public void setListener(Listener listener){
+        this.listener = listener == null ? Listener.NONE : listener;
+    }
+
+    /**
+     * 領域の境界付近での出入りの繰り返しを抑える.<br>
+     * 隣の領域へは境界（二つの母点の垂直二等分線）から指定した距離以上入り込むまで移らない
+     * @param distance 0以上 初期値は0
+     */
+    public void setHysteresis(double distance){
+        if ( !(distance >= 0) ){
+            throw new IllegalArgumentException("hysteresis must be non-negative : " + distance);
+        }
+        this.hysteresis = distance;
+    }
+
+    /**
+     * 次の点へ移動する
+     * @return 現在属する領域の母点のindex {@link PointLocator#getSite(int)}. 分割に三角形が無ければ-1
+     */
+    public int moveTo(double x, double y){
+        int nearest = locator.findNearest(x, y, current);
+        if ( current >= 0 && nearest != current && hysteresis > 0 ){
+            double[] coords = locator.getTriangulation().getCoordinates();
+            double cx = coords[2*current], cy = coords[2*current+1];
+            double nx = coords[2*nearest], ny = coords[2*nearest+1];
+            double dc = (cx - x) * (cx - x) + (cy - y) * (cy - y);
+            double dn = (nx - x) * (nx - x) + (ny - y) * (ny - y);
+            // 二等分線から新しい領域の側へ入り込んだ距離
+            double depth = (dc - dn) / (2 * Math.hypot(nx - cx, ny - cy));
+            if ( depth < hysteresis ) nearest = current;
+        }
+        if ( nearest != current ){
+            if ( current >= 0 ) listener.onExit(locator.getSite(current), sample);
+            if ( nearest >= 0 ) listener.onEnter(locator.getSite(nearest), sample);
+            current = nearest;
+        }
+        sample++;
+        return current;
+    }
+
+    /**
+     * @see #moveTo(double, double)
+     */
+    public int moveTo(Point point){
+        return moveTo(point.getX(), point.getY());
+    }
+
+    /**
+     * 軌跡を終える. 現在の領域があれば{@link Listener#onExit(Point, long)}を通知し、次の点は新しい軌跡として扱う
+     */
+    public void reset(){
+        if ( current >= 0 ) listener.onExit(locator.getSite(current), sample);
+        current = -1;
+        sample = 0;
+    }
+
+    /**
+     * 現在属する領域の母点
+     * @return Null if 点を一つも渡していない
+     */
+    public Point getSite(){
+        return current < 0 ? null : locator.getSite(current);
+    }
+
+    /**
+     * 現在属する領域
+     * @return Null if 点を一つも渡していない
+     */
+    public VoronoiDiagram.VoronoiArea getArea(){
+        return current < 0 ? null : diagram.getVoronoiArea(locator.getSite(current));
+    }
+
+    /**
+     * これまでに渡した点の数
+     */
+    public long getSampleCount(){
+        return sample;
+    }
+
+}
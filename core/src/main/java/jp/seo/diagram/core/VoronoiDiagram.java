@@ -1,8 +1,10 @@
 package jp.seo.diagram.core;
 
-import org.jetbrains.annotations.NotNull;
-
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * @author Seo-4d696b75
@@ -17,19 +19,102 @@ public class VoronoiDiagram extends DelaunayDiagram {
         super(list);
     }
 
+    /**
+     * @see DelaunayDiagram#DelaunayDiagram(Collection, double)
+     */
+    public VoronoiDiagram(Collection<? extends Point> list, double tolerance) {
+        super(list, tolerance);
+    }
+
     private Set<Edge> solvedEdge;
     private Map<Point, VoronoiArea> areaMap;
+    /* ドロネー分割の辺 => 対応するボロノイ図の辺 */
+    private Map<Edge, Edge> boundaryMap;
+    private Rectangle border;
+    /* split(List<Polygon>)で指定した境界. それ以外ならNull */
+    private PolygonClipper clipper;
+    /* 遅延計算で保持する領域の最大数. 0以下なら遅延計算しない */
+    private int cacheCapacity;
+    /* 遅延計算のモードで計算した領域. それ以外ならNull */
+    private LruCache<Point, VoronoiArea> areaCache;
+    /* 遅延計算のモードで各母点と辺で結ばれた点のひとつ */
+    private Map<Point, Point> neighborMap;
 
+    /**
+     * ボロノイ領域を必要になった時点で計算するモードを指定する.<br>
+     * 次に{@link #split(Rectangle)}などで計算するときから有効になり、ドロネー分割のみ計算して
+     * 各領域は{@link #getVoronoiArea(Point)}で初めて要求された時点でその母点の周囲の三角形から計算します.
+     * 計算した領域は指定した数まで保持し、それを超えると最も長く参照されていない領域から破棄します.
+     * このモードでは{@link #getVoronoiAreas()}・{@link #getEdges()}も結果を保持しません. 領域は複数のスレッドから同時に要求できる
+     * @param capacity 保持する領域の最大数. 0以下なら遅延計算しない. default is 0
+     */
+    public void setLazyAreas(int capacity) {
+        this.cacheCapacity = capacity;
+    }
+
+    /**
+     * 遅延計算のモードでは各領域を走査する時点で{@link #getVoronoiArea(Point)}と同様に計算するビューを返し、
+     * 走査しても保持する領域の数は{@link #setLazyAreas(int)}で指定した上限を超えない
+     * @return 各母点のボロノイ領域. {@link #split(Rectangle, DiagramVisitor)}で計算した場合はNull
+     */
     public Collection<VoronoiArea> getVoronoiAreas() {
-        return areaMap.values();
+        if (areaCache != null) {
+            final Map<Point, Point> neighbors = neighborMap;
+            final LruCache<Point, VoronoiArea> cache = areaCache;
+            return new AbstractCollection<VoronoiArea>() {
+                @Override
+                public Iterator<VoronoiArea> iterator() {
+                    final Iterator<Point> sites = neighbors.keySet().iterator();
+                    return new Iterator<VoronoiArea>() {
+                        @Override
+                        public boolean hasNext() {
+                            return sites.hasNext();
+                        }
+
+                        @Override
+                        public VoronoiArea next() {
+                            return cache.get(sites.next(), s -> solveArea(s, neighbors.get(s)));
+                        }
+                    };
+                }
+
+                /* 辺で結ばれた点のある母点の領域は必ず矩形と交わる */
+                @Override
+                public int size() {
+                    return neighbors.size();
+                }
+            };
+        }
+        return areaMap == null ? null : areaMap.values();
     }
 
+    /**
+     * @param key 母点. 近接する他の点にまとめられた点なら代表点の領域
+     */
     public VoronoiArea getVoronoiArea(Point key) {
-        return areaMap.get(key);
+        if (areaMap == null && areaCache == null) return null;
+        Point site = getRepresentative(key);
+        if (areaCache != null) {
+            return neighborMap.containsKey(site) ? areaCache.get(site, s -> solveArea(s, neighborMap.get(s))) : null;
+        }
+        return areaMap.get(site);
     }
 
+    /**
+     * 遅延計算のモードでは呼び出す度にドロネー分割の各辺から計算し、結果は保持しない
+     */
     @Override
     public Set<Edge> getEdges() {
+        if (areaCache != null) {
+            Map<Edge, TrianglePair> pairMap = getEdgeTriangleMap();
+            Set<Edge> edges = new HashSet<>();
+            double[] buffer = new double[4];
+            for (Edge edge : super.getEdges()) {
+                Edge boundary = getBoundary(edge, pairMap.get(edge), buffer);
+                if (boundary != null) edges.add(boundary);
+            }
+            return edges;
+        }
         return this.solvedEdge;
     }
 
@@ -37,179 +122,591 @@ public class VoronoiDiagram extends DelaunayDiagram {
         return super.getEdges();
     }
 
+    /**
+     * ボロノイ図を計算し、各領域を境界の多角形の内側に切り取る
+     * @param boundary 凹でもよい. 自己交差しないこと
+     * @see #split(List)
+     */
+    public void split(Polygon boundary) {
+        split(Collections.singletonList(boundary));
+    }
+
+    /**
+     * ボロノイ図を計算し、各領域を複数の多角形からなる境界の内側に切り取る.<br>
+     * 他の多角形の内側にある多角形は穴として扱います（偶奇規則）.
+     * 境界の辺は格子で索引し、各領域は近くにある辺のみと交差を判定して{@link VoronoiArea#parts}に格納します.
+     * {@link VoronoiArea#points}などの結果は境界とすべての母点を含む矩形で{@link #split(Rectangle)}した場合と同じ
+     * @param boundary 自己交差しない多角形
+     */
+    public void split(List<Polygon> boundary) {
+        PolygonClipper clipper = new PolygonClipper(boundary);
+        Rectangle border = clipper.getBorder(getPoints());
+        this.clipper = clipper;
+        super.split(border);
+    }
+
     @Override
     public void split(Rectangle border) {
+        clipper = null;
         super.split(border);
+    }
+
+    @Override
+    protected void onSplit(Rectangle border) {
+        this.border = border;
         Map<Edge, TrianglePair> pairMap = getEdgeTriangleMap();
         Set<Edge> edges = super.getEdges();
-        areaMap = new HashMap<>();
-        int size = edges.size();
+        if (cacheCapacity > 0) {
+            prepareLazyAreas(edges);
+            return;
+        }
+        areaCache = null;
+        neighborMap = null;
+        boundaryMap = new HashMap<>();
+        Progress progress = new Progress(getListener(), DiagramListener.Phase.VORONOI_EDGES, edges.size());
         int cnt = 0;
-        System.out.println("calculating voronoi diagram...");
         solvedEdge = new HashSet<>();
+        // 各母点から辺で結ばれた点をひとつずつ選んで辿り始める
+        Map<Point, Point> start = new HashMap<>();
+        double[] buffer = new double[4];
         for (Edge edge : edges) {
-            TrianglePair pair = pairMap.get(edge);
-            Triangle t1 = pair.getTriangle1();
-            Triangle t2 = pair.getTriangle2();
-            if (t2 != null) {
-                Point p1 = t1.getCircumscribed().center;
-                Point p2 = t2.getCircumscribed().center;
-                Edge boundary = new Edge(p1, p2);
-                if (isInsideRect(border, boundary)) {
-                    // nothing
-                } else if (isInsideRect(border, p1)) {
-                    Point p = getBorderIntersection(border, boundary);
-                    boundary = new Edge(p, p1);
-                } else if (isInsideRect(border, p2)) {
-                    Point p = getBorderIntersection(border, boundary);
-                    boundary = new Edge(p, p2);
-                } else {
-                    boundary = null;
-                }
-                if (boundary != null) {
-                    solvedEdge.add(boundary);
-                    addEdge(boundary, edge.a);
-                    addEdge(boundary, edge.b);
-                }
-            } else {
-                // ドロネー図の一番外側の辺
-                // 本当はこの三角形の外心を端点にもつ長さ無限の半直線が生えているのだが、
-                // とりあえず適当な長さの線分を生やしておく
-                Point center = t1.getCircumscribed().center;
-                Point opposite = pair.getPoint1();
-                Line bisector = Line.getPerpendicularBisector(edge);
-                Point vector = bisector.getUnitDirectionVector();
-                Point intersection = edge.getIntersection(bisector);
-                int direction = edge.onSameSide(center, opposite) ?
-                        Point.compare(intersection, center) : Point.compare(center, intersection);
-                Point outer = new BasePoint(
-                        center.getX() + vector.getX() * direction * 100,
-                        center.getY() + vector.getY() * direction * 100
-                );
-                Edge line = new Edge(center, outer);
-                if (!isOutsideRect(border, line)) {
-                    Point p = getBorderIntersection(border, line);
-                    Edge boundary = new Edge(center, p);
-                    solvedEdge.add(boundary);
-                    addEdge(boundary, edge.a);
-                    addEdge(boundary, edge.b);
-                }
+            Edge boundary = getBoundary(edge, pairMap.get(edge), buffer);
+            if (boundary != null) {
+                solvedEdge.add(boundary);
+                boundaryMap.put(edge, boundary);
             }
-            System.out.printf(Locale.US, "\r%.2f%% complete  ", (double) cnt++ * 100 / size);
+            start.putIfAbsent(edge.a, edge.b);
+            start.putIfAbsent(edge.b, edge.a);
+            progress.update(++cnt);
         }
-        System.out.println("\ncheck...");
-        for (VoronoiArea area : areaMap.values()) {
-            area.onEnclosed();
+        progress.complete(cnt, getMetrics());
+        Point[] sites = start.keySet().toArray(new Point[0]);
+        VoronoiArea[] areas = solveAreas(sites, start);
+        areaMap = new HashMap<>();
+        for (int i = 0; i < sites.length; i++) {
+            if (areas[i] != null) {
+                areaMap.put(sites[i], areas[i]);
+                if (areas[i].clipped) getMetrics().openAreas++;
+            }
         }
-        System.out.println("done.");
     }
 
-    private void addEdge(Edge boundary, Point p) {
-        areaMap.computeIfAbsent(p, (VoronoiArea::new));
-        VoronoiArea area = areaMap.get(p);
-        area.addEdge(boundary);
+    /**
+     * ボロノイ図の辺や領域は計算せず、各母点から辿り始める点のみ求めておく
+     */
+    private void prepareLazyAreas(Set<Edge> edges) {
+        solvedEdge = null;
+        boundaryMap = null;
+        areaMap = null;
+        Map<Point, Point> start = new HashMap<>();
+        for (Edge edge : edges) {
+            start.putIfAbsent(edge.a, edge.b);
+            start.putIfAbsent(edge.b, edge.a);
+        }
+        // 分割結果のビューが内部で遅延して生成する索引を複数のスレッドから参照される前に生成しておく
+        if (!start.isEmpty()) {
+            Map.Entry<Point, Point> entry = start.entrySet().iterator().next();
+            getPairsAround(entry.getKey(), entry.getValue());
+        }
+        neighborMap = start;
+        areaCache = new LruCache<>(cacheCapacity);
     }
 
-    @NotNull
-    private Point getBorderIntersection(Rectangle b, Edge line) {
-        Point p;
-        Edge top = new Edge(new BasePoint(b.left, b.top), new BasePoint(b.right, b.top));
-        p = top.getIntersection(line);
-        if (p != null) return p;
-        Edge right = new Edge(new BasePoint(b.right, b.top), new BasePoint(b.right, b.bottom));
-        p = right.getIntersection(line);
-        if (p != null) return p;
-        Edge bottom = new Edge(new BasePoint(b.left, b.bottom), new BasePoint(b.right, b.bottom));
-        p = bottom.getIntersection(line);
-        if (p != null) return p;
-        Edge left = new Edge(new BasePoint(b.left, b.top), new BasePoint(b.left, b.bottom));
-        p = left.getIntersection(line);
-        if (p != null) return p;
-        throw new RuntimeException("no intersection");
+    /**
+     * 各母点のボロノイ領域は互いに独立しているので、{@link #setParallelism(int)}で指定した並列数で計算する.<br>
+     * 分割結果は読み出すだけで変更しない. 結果は母点と同じ順に並べて返すので、並列数によらず同じ結果になる
+     * @param sites 母点
+     * @param start 各母点と辺で結ばれた点のひとつ
+     * @return 各母点の領域 矩形の外側ならNull
+     */
+    private VoronoiArea[] solveAreas(Point[] sites, Map<Point, Point> start) {
+        final int size = sites.length;
+        final VoronoiArea[] areas = new VoronoiArea[size];
+        final Progress progress = new Progress(getListener(), DiagramListener.Phase.VORONOI_AREAS, size);
+        final int chunk = Math.max(1, size / Progress.STEPS);
+        final AtomicInteger cnt = new AtomicInteger();
+        IntConsumer task = c -> {
+            int end = Math.min(size, (c + 1) * chunk);
+            for (int i = c * chunk; i < end; i++) {
+                areas[i] = solveArea(sites[i], start.get(sites[i]));
+            }
+            int done = cnt.addAndGet(end - c * chunk);
+            synchronized (progress) {
+                progress.update(done);
+            }
+        };
+        final int chunks = (size + chunk - 1) / chunk;
+        if (getParallelism() > 1 && chunks > 1) {
+            ForkJoinPool pool = new ForkJoinPool(getParallelism());
+            try {
+                pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(task)).join();
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            IntStream.range(0, chunks).forEach(task);
+        }
+        progress.complete(size, getMetrics());
+        return areas;
     }
 
-    private boolean isInsideRect(Rectangle rect, Edge e) {
-        return isInsideRect(rect, e.a) && isInsideRect(rect, e.b);
+    /**
+     * 各母点の周囲の辺からボロノイ領域をひとつずつ計算して渡す.
+     * 辺の集合や領域のマップは生成しない
+     */
+    @Override
+    protected void onSplit(Rectangle border, DiagramVisitor visitor) {
+        this.border = border;
+        clipper = null;
+        areaCache = null;
+        neighborMap = null;
+        areaMap = null;
+        boundaryMap = null;
+        solvedEdge = null;
+        Progress progress = new Progress(getListener(), DiagramListener.Phase.VORONOI_AREAS, getPoints().size());
+        int[] cnt = {0};
+        forEachSite((site, pairs) -> {
+            VoronoiArea area = toArea(site, pairs);
+            if (area != null) {
+                if (area.clipped) getMetrics().openAreas++;
+                visitor.visitVoronoiArea(area);
+            }
+            progress.update(++cnt[0]);
+        });
+        progress.complete(cnt[0], getMetrics());
     }
 
-    private boolean isOutsideRect(Rectangle rect, Edge e) {
-        return !isInsideRect(rect, e.a) && !isInsideRect(rect, e.b);
+    /**
+     * 分割済みの図に母点を追加し、変化したボロノイ領域のみ計算し直す
+     * @return ボロノイ領域が変化した母点の集合（追加した点を含む）. 既に同じ点が存在する場合は空集合
+     * @see DelaunayDiagram#insert(Point)
+     */
+    @Override
+    public Set<Point> insert(Point point) {
+        Set<Point> changed = super.insert(point);
+        updateAreas(changed);
+        return changed;
     }
 
-    private boolean isInsideRect(Rectangle rect, Point p) {
-        return rect.left <= p.getX() && p.getX() <= rect.right &&
-                rect.bottom <= p.getY() && p.getY() <= rect.top;
+    /**
+     * 分割済みの図から母点を取り除き、変化したボロノイ領域のみ計算し直す
+     * @return ボロノイ領域が変化した母点の集合（取り除いた点は含まない）. 該当する母点が存在しない場合は空集合
+     * @see DelaunayDiagram#remove(Point)
+     */
+    @Override
+    public Set<Point> remove(Point point) {
+        Set<Point> changed = super.remove(point);
+        if (!changed.isEmpty()) {
+            if (areaCache != null) {
+                neighborMap.remove(point);
+                areaCache.remove(point);
+            } else {
+                areaMap.remove(point);
+            }
+        }
+        updateAreas(changed);
+        return changed;
     }
 
-    public static class VoronoiArea {
+    private void updateAreas(Set<Point> changed) {
+        Map<Edge, TrianglePair> pairMap = getEdgeTriangleMap();
+        for (Point site : changed) {
+            Point start = null;
+            for (Point other : changed) {
+                if (!other.equals(site) && pairMap.containsKey(new Edge(site, other))) {
+                    start = other;
+                    break;
+                }
+            }
+            if (areaCache != null) {
+                // 次に要求された時点で計算し直す
+                areaCache.remove(site);
+                if (start == null) {
+                    neighborMap.remove(site);
+                } else {
+                    neighborMap.put(site, start);
+                }
+                continue;
+            }
+            VoronoiArea area = start == null ? null : solveArea(site, start);
+            if (area == null) {
+                areaMap.remove(site);
+            } else {
+                areaMap.put(site, area);
+            }
+        }
+    }
 
-        private VoronoiArea(Point center) {
-            this.center = center;
+    @Override
+    protected void onEdgeChanged(Edge edge, TrianglePair pair) {
+        if (boundaryMap == null) return;
+        Edge old = boundaryMap.remove(edge);
+        if (old != null) solvedEdge.remove(old);
+        if (pair != null) {
+            Edge boundary = getBoundary(edge, pair, new double[4]);
+            if (boundary != null) {
+                solvedEdge.add(boundary);
+                boundaryMap.put(edge, boundary);
+            }
+        }
+    }
+
+    /**
+     * ドロネー分割の辺に対応するボロノイ図の辺を計算する
+     * @param buffer {@link #clip(double, double, double, double, double, double[])}の作業領域
+     * @return Null if 矩形の外側
+     */
+    private Edge getBoundary(Edge edge, TrianglePair pair, double[] buffer) {
+        Triangle t1 = pair.getTriangle1();
+        Triangle t2 = pair.getTriangle2();
+        Point origin = t1.getCircumscribed().center;
+        Point end = null;
+        double dx, dy, limit;
+        if (t2 != null) {
+            end = t2.getCircumscribed().center;
+            if (origin.compareTo(end) > 0) {
+                // 三角形の組の順序に依らず同じ端点を得るため向きを揃える
+                Point tmp = origin;
+                origin = end;
+                end = tmp;
+            }
+            dx = end.getX() - origin.getX();
+            dy = end.getY() - origin.getY();
+            limit = 1;
+        } else {
+            // ドロネー図の一番外側の辺. 外心から三角形の無い側へ無限に伸びる半直線
+            double ex = edge.b.getX() - edge.a.getX();
+            double ey = edge.b.getY() - edge.a.getY();
+            boolean left = Predicates.orient2d(edge.a, edge.b, pair.getPoint1()) > 0;
+            dx = left ? ey : -ey;
+            dy = left ? -ex : ex;
+            limit = Double.POSITIVE_INFINITY;
         }
+        if (!clip(origin.getX(), origin.getY(), dx, dy, limit, buffer)) return null;
+        Point a = pointAt(origin, end, dx, dy, buffer[0]);
+        Point b = pointAt(origin, end, dx, dy, buffer[1]);
+        if (a.getX() == b.getX() && a.getY() == b.getY()) return null;
+        return new Edge(a, b);
+    }
 
-        private void addEdge(Edge edge) {
-            if (pool == null) {
-                pool = new LinkedList<>();
-                list = new LinkedList<>();
-                list.add(edge.a);
-                list.add(edge.b);
-                start = edge.a;
-                end = edge.b;
+    /**
+     * 半直線・線分 {@code (x + t*dx, y + t*dy), 0 <= t <= limit} のうち矩形の内側にある区間を求める（Liang-Barsky法）
+     * @param buffer 区間の両端のtと、それぞれを決めた矩形の辺（下・右・上・左の順に0-3、切り取られていなければ-1）を格納する
+     * @return 矩形の内側に長さのある区間が無いならfalse
+     */
+    private boolean clip(double x, double y, double dx, double dy, double limit, double[] buffer) {
+        double t0 = 0, t1 = limit;
+        int side0 = -1, side1 = -1;
+        for (int side = 0; side < 4; side++) {
+            // 内側は p * t <= q
+            double p, q;
+            switch (side) {
+                case 0:
+                    p = -dy;
+                    q = y - border.bottom;
+                    break;
+                case 1:
+                    p = dx;
+                    q = border.right - x;
+                    break;
+                case 2:
+                    p = dy;
+                    q = border.top - y;
+                    break;
+                default:
+                    p = -dx;
+                    q = x - border.left;
+            }
+            if (p == 0) {
+                if (q < 0) return false;
+            } else if (p < 0) {
+                double t = q / p;
+                if (t > t0) {
+                    t0 = t;
+                    side0 = side;
+                }
             } else {
-                if (merge(edge)) {
-                    while (true) {
-                        if (!pool.removeIf(this::merge) || pool.isEmpty()) break;
-                    }
-                } else {
-                    pool.add(edge);
+                double t = q / p;
+                if (t < t1) {
+                    t1 = t;
+                    side1 = side;
                 }
             }
         }
+        // 外心が一致する場合は長さ0の線分
+        if (t0 > t1 || (t0 == t1 && (dx != 0 || dy != 0))) return false;
+        buffer[0] = t0;
+        buffer[1] = t1;
+        buffer[2] = side0;
+        buffer[3] = side1;
+        return true;
+    }
 
-        private boolean merge(Edge edge) {
-            if (edge.a.equals(start)) {
-                list.add(0, edge.b);
-                start = edge.b;
-            } else if (edge.a.equals(end)) {
-                list.add(edge.b);
-                end = edge.b;
-            } else if (edge.b.equals(start)) {
-                list.add(0, edge.a);
-                start = edge.a;
-            } else if (edge.b.equals(end)) {
-                list.add(edge.a);
-                end = edge.a;
-            } else {
-                return false;
+    private Point pointAt(Point origin, Point end, double dx, double dy, double t) {
+        if (t == 0) return origin;
+        if (t == 1 && end != null) return end;
+        return new BasePoint(origin.getX() + dx * t, origin.getY() + dy * t);
+    }
+
+    private VoronoiArea solveArea(Point site, Point neighbor) {
+        List<TrianglePair> pairs = getPairsAround(site, neighbor);
+        VoronoiArea area = toArea(site, pairs);
+        if (area != null && clipper != null) area.parts = clipper.clip(getCell(site, pairs));
+        return area;
+    }
+
+    /**
+     * 母点の周囲の三角形の組から矩形で切り取る前のボロノイ領域を反時計回りの凸多角形として求める.
+     * 凸包上の母点の領域は無限に広がるので、矩形より十分遠くで打ち切る
+     */
+    private Point[] getCell(Point site, List<TrianglePair> pairs) {
+        final int size = pairs.size();
+        // 右側の三角形が無い辺から辿り始める
+        int first = 0;
+        boolean open = false;
+        for (int i = 0; i < size && !open; i++) {
+            if (getSide(site, pairs.get(i), false) == null) {
+                first = i;
+                open = true;
             }
-            return true;
         }
+        List<Point> list = new ArrayList<>(size + 3);
+        double distance = 0;
+        for (int k = 0; k < size; k++) {
+            Triangle left = getSide(site, pairs.get((first + k) % size), true);
+            if (left != null) {
+                Point center = left.getCircumscribed().center;
+                list.add(center);
+                distance = Math.max(distance, Math.hypot(center.getX() - site.getX(), center.getY() - site.getY()));
+            }
+        }
+        if (!open || list.isEmpty()) return list.toArray(new Point[0]);
+        double far = 4 * (distance + Math.hypot(border.right - border.left, border.top - border.bottom));
+        // 最初の辺の右側・最後の辺の左側へ伸びる半直線とその間の方向
+        Point n0 = getNeighbor(site, pairs.get(first));
+        Point nk = getNeighbor(site, pairs.get((first + size - 1) % size));
+        double x0 = n0.getY() - site.getY(), y0 = site.getX() - n0.getX();
+        double xk = site.getY() - nk.getY(), yk = nk.getX() - site.getX();
+        double l0 = Math.hypot(x0, y0), lk = Math.hypot(xk, yk);
+        x0 /= l0;
+        y0 /= l0;
+        xk /= lk;
+        yk /= lk;
+        double angle = Math.atan2(xk * y0 - yk * x0, xk * x0 + yk * y0);
+        if (angle < 0) angle += 2 * Math.PI;
+        double xm = xk * Math.cos(angle / 2) - yk * Math.sin(angle / 2);
+        double ym = xk * Math.sin(angle / 2) + yk * Math.cos(angle / 2);
+        Point c0 = list.get(0);
+        Point ck = list.get(list.size() - 1);
+        list.add(new BasePoint(ck.getX() + xk * far, ck.getY() + yk * far));
+        list.add(new BasePoint(site.getX() + xm * far, site.getY() + ym * far));
+        list.add(new BasePoint(c0.getX() + x0 * far, c0.getY() + y0 * far));
+        return list.toArray(new Point[0]);
+    }
+
+    private Point getNeighbor(Point site, TrianglePair pair) {
+        return pair.a.equals(site) ? pair.b : pair.a;
+    }
+
+    /**
+     * @param left trueなら母点から見て辺の左側、falseなら右側
+     * @return 辺を共有する三角形 凸包の外側ならNull
+     */
+    private Triangle getSide(Point site, TrianglePair pair, boolean left) {
+        boolean first = Predicates.orient2d(site, getNeighbor(site, pair), pair.getPoint1()) > 0;
+        return first == left ? pair.getTriangle1() : pair.getTriangle2();
+    }
 
-        private void onEnclosed() {
-            if (!pool.isEmpty()) {
-                throw new RuntimeException("fail to solve voronoi area at " + center.toString());
+    /**
+     * 母点の周囲を反時計回りに回りながらボロノイ領域の頂点を順に並べる.<br>
+     * 隣り合う辺に対応するボロノイ図の辺は間の三角形の外心を共有するので、
+     * 矩形で切り取られていなければそのまま繋がる. 切り取られた辺の間は矩形の周上を反時計回りに辿り、
+     * 間にある矩形の角を加えて閉じる
+     * @param site 母点
+     * @param pairs 母点と辺で結ばれた点との辺を共有する三角形の組. 反時計回りの順
+     * @return Null if 領域が矩形の外側
+     */
+    private VoronoiArea toArea(Point site, List<TrianglePair> pairs) {
+        final int size = pairs.size();
+        final Point[] from = new Point[size];
+        final Point[] to = new Point[size];
+        // 始点・終点を切り取った矩形の辺. 切り取られていなければ-1
+        final int[] fromSide = new int[size];
+        final int[] toSide = new int[size];
+        final double[] buffer = new double[4];
+        int cnt = 0;
+        for (int i = 0; i < size; i++) {
+            if (getBoundary(site, pairs.get(i), from, to, fromSide, toSide, buffer, i)) cnt++;
+        }
+        if (cnt == 0) return null;
+        // 前の辺と繋がっていない辺から辿り始める
+        int start = -1;
+        for (int i = 0; i < size && start < 0; i++) {
+            if (from[i] != null && !isJoined(to, toSide, fromSide, i, size)) start = i;
+        }
+        List<Point> list = new ArrayList<>(cnt + 4);
+        if (start < 0) {
+            for (int i = 0; i < size; i++) addVertex(list, to[i]);
+            return new VoronoiArea(site, toArray(list), false);
+        }
+        int last = -1;
+        for (int k = 0; k < size; k++) {
+            int i = (start + k) % size;
+            if (from[i] == null) continue;
+            if (last >= 0 && !isJoined(to, toSide, fromSide, i, size)) {
+                addCorners(list, to[last], toSide[last], from[i], fromSide[i]);
             }
-            if (!start.equals(end)) {
-                //throw new RuntimeException("voronoi area not enclosed at " + center.toString());
-                System.out.println("voronoi area not enclosed at " + center.toString());
-                enclosed = false;
-            } else {
-                enclosed = true;
-                list.remove(0);
+            if (!isJoined(to, toSide, fromSide, i, size)) addVertex(list, from[i]);
+            addVertex(list, to[i]);
+            last = i;
+        }
+        addCorners(list, to[last], toSide[last], from[start], fromSide[start]);
+        return new VoronoiArea(site, toArray(list), true);
+    }
+
+    private boolean isJoined(Point[] to, int[] toSide, int[] fromSide, int i, int size) {
+        int previous = (i + size - 1) % size;
+        return to[previous] != null && toSide[previous] < 0 && fromSide[i] < 0;
+    }
+
+    private void addVertex(List<Point> list, Point point) {
+        if (!list.isEmpty()) {
+            Point last = list.get(list.size() - 1);
+            if (last.getX() == point.getX() && last.getY() == point.getY()) return;
+        }
+        list.add(point);
+    }
+
+    private Point[] toArray(List<Point> list) {
+        int size = list.size();
+        if (size > 1) {
+            Point first = list.get(0);
+            Point last = list.get(size - 1);
+            if (first.getX() == last.getX() && first.getY() == last.getY()) size--;
+        }
+        return list.subList(0, size).toArray(new Point[0]);
+    }
+
+    /**
+     * 矩形の辺上の二点の間にある矩形の角を反時計回りの順に加える
+     */
+    private void addCorners(List<Point> list, Point exit, int exitSide, Point enter, int enterSide) {
+        double s = perimeterOf(exit, exitSide);
+        double distance = perimeterOf(enter, enterSide) - s;
+        if (distance < 0) distance += 4;
+        for (int k = (int) Math.floor(s) + 1; k - s < distance; k++) {
+            switch (k % 4) {
+                case 0:
+                    addVertex(list, new BasePoint(border.left, border.bottom));
+                    break;
+                case 1:
+                    addVertex(list, new BasePoint(border.right, border.bottom));
+                    break;
+                case 2:
+                    addVertex(list, new BasePoint(border.right, border.top));
+                    break;
+                default:
+                    addVertex(list, new BasePoint(border.left, border.top));
             }
-            points = new Point[list.size()];
-            list.toArray(points);
-            list = null;
-            pool = null;
+        }
+    }
+
+    /**
+     * 矩形の周上の位置. 左下の角から反時計回りに各辺を0-1で測る
+     */
+    private double perimeterOf(Point p, int side) {
+        switch (side) {
+            case 0:
+                return (p.getX() - border.left) / (border.right - border.left);
+            case 1:
+                return 1 + (p.getY() - border.bottom) / (border.top - border.bottom);
+            case 2:
+                return 2 + (border.right - p.getX()) / (border.right - border.left);
+            default:
+                return 3 + (border.top - p.getY()) / (border.top - border.bottom);
+        }
+    }
+
+    /**
+     * 母点から見て辺の右側の三角形の外心から左側の三角形の外心へ向かうボロノイ図の辺を矩形で切り取る.
+     * 凸包上の辺では片側が無限遠に伸びる半直線になる
+     * @return 矩形の外側ならfalse
+     */
+    private boolean getBoundary(Point site, TrianglePair pair, Point[] from, Point[] to, int[] fromSide, int[] toSide, double[] buffer, int i) {
+        Point neighbor = getNeighbor(site, pair);
+        Triangle left = getSide(site, pair, true);
+        Triangle right = getSide(site, pair, false);
+        Point origin, end = null;
+        double dx, dy, limit;
+        boolean reverse = right == null;
+        if (left != null && right != null) {
+            origin = right.getCircumscribed().center;
+            end = left.getCircumscribed().center;
+            if (origin.compareTo(end) > 0) {
+                // 隣の母点の領域と同じ端点を得るため向きを揃える
+                Point tmp = origin;
+                origin = end;
+                end = tmp;
+                reverse = true;
+            }
+            dx = end.getX() - origin.getX();
+            dy = end.getY() - origin.getY();
+            limit = 1;
+        } else {
+            // 三角形の無い側へ伸びる
+            origin = (left == null ? right : left).getCircumscribed().center;
+            double ex = neighbor.getX() - site.getX();
+            double ey = neighbor.getY() - site.getY();
+            dx = left == null ? -ey : ey;
+            dy = left == null ? ex : -ex;
+            limit = Double.POSITIVE_INFINITY;
+        }
+        if (!clip(origin.getX(), origin.getY(), dx, dy, limit, buffer)) return false;
+        Point a = pointAt(origin, end, dx, dy, buffer[0]);
+        Point b = pointAt(origin, end, dx, dy, buffer[1]);
+        if (reverse) {
+            // 右側の三角形が無ければ無限遠から外心へ向かう
+            from[i] = b;
+            fromSide[i] = (int) buffer[3];
+            to[i] = a;
+            toSide[i] = (int) buffer[2];
+        } else {
+            from[i] = a;
+            fromSide[i] = (int) buffer[2];
+            to[i] = b;
+            toSide[i] = (int) buffer[3];
+        }
+        return true;
+    }
+
+    public static class VoronoiArea {
+
+        private VoronoiArea(Point center, Point[] points, boolean clipped) {
+            this.center = center;
+            this.points = points;
+            this.enclosed = true;
+            this.clipped = clipped;
         }
 
         public final Point center;
+        /**
+         * 領域の頂点. 反時計回りの順. 矩形で切り取られた領域は矩形の辺と角を含めて閉じた多角形になる
+         */
         public Point[] points;
+        /**
+         * 領域の頂点が閉じた多角形をなすならtrue. 矩形で切り取られた領域も閉じるので常にtrue
+         */
         public boolean enclosed;
-
-        private Point start, end;
-        private List<Point> list;
-        private List<Edge> pool;
+        /**
+         * 領域が矩形で切り取られているならtrue
+         */
+        public boolean clipped;
+        /**
+         * {@link VoronoiDiagram#split(List)}で指定した境界の内側に切り取った領域.
+         * 反時計回りの外周と時計回りの穴からなり、境界の外側にある領域なら空.
+         * それ以外の方法で計算した場合はNull
+         */
+        public Polygon[] parts;
 
     }
 
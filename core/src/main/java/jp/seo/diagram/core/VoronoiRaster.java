@@ -0,0 +1,378 @@
+package jp.seo.diagram.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * ボロノイ領域を格子状に区切った索引. 点の属する領域をO(1)で求めます.<br>
+ * 格子の各区画には、区画全体を含む領域があればその母点のid、
+ * ボロノイ図の辺が横切る区画なら区画と重なる領域の母点idの候補を保持します.
+ * 候補のある区画では候補の母点のうち最も近いものを求めるので、結果は常に厳密です.
+ * {@link VoronoiDiagram#split(List)}で境界の多角形に切り取った図では、境界に切り取られた領域の多角形も保持し、
+ * 境界の外側や穴にある点はどの領域にも属さないとして-1を返します.
+ * <p>
+ * 値はすべてプリミティブ配列で保持し、{@link Serializable}です. 構築後は変更しないので複数のスレッドから参照できます
+ * @author Seo-4d696b75
+ * @version 2026/10/18
+ */
+public final class VoronoiRaster implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 分割済みの図の各ボロノイ領域を格子に描画する.<br>
+     * 格子の範囲はボロノイ領域全体の外接矩形. 母点のidは{@link VoronoiDiagram#getVoronoiAreas()}の順.
+     * {@link VoronoiDiagram#setLazyAreas(int)}で遅延計算する図では全ての領域を一度ずつ計算する
+     * @param diagram 分割済みの図
+     * @param columns 横方向の区画数
+     * @param rows 縦方向の区画数
+     * @throws IllegalStateException 分割を計算していない場合
+     */
+    public VoronoiRaster(VoronoiDiagram diagram, int columns, int rows){
+        if ( columns <= 0 || rows <= 0 ){
+            throw new IllegalArgumentException(String.format("invalid grid size : %dx%d", columns, rows));
+        }
+        if ( diagram.getTriangles() == null ){
+            throw new IllegalStateException("not split yet");
+        }
+        final Collection<VoronoiDiagram.VoronoiArea> areas = diagram.getVoronoiAreas();
+        final VoronoiDiagram.VoronoiArea[] list = areas.toArray(new VoronoiDiagram.VoronoiArea[0]);
+        this.columns = columns;
+        this.rows = rows;
+        sites = new double[list.length * 2];
+        double left = Double.POSITIVE_INFINITY, bottom = Double.POSITIVE_INFINITY;
+        double right = Double.NEGATIVE_INFINITY, top = Double.NEGATIVE_INFINITY;
+        for ( int i=0 ; i<list.length ; i++ ){
+            sites[2*i] = list[i].center.getX();
+            sites[2*i+1] = list[i].center.getY();
+            for ( Point p : list[i].points ){
+                left = Math.min(left, p.getX());
+                right = Math.max(right, p.getX());
+                bottom = Math.min(bottom, p.getY());
+                top = Math.max(top, p.getY());
+            }
+        }
+        if ( list.length == 0 ){
+            left = bottom = right = top = 0;
+        }
+        this.left = left;
+        this.bottom = bottom;
+        this.width = (right - left) / columns;
+        this.height = (top - bottom) / rows;
+
+        // 境界の多角形で切り取られた領域
+        if ( list.length > 0 && list[0].parts != null ){
+            whole = new boolean[list.length];
+            siteRings = new int[list.length + 1];
+            int ringSize = 0, vertexSize = 0;
+            for ( int i=0 ; i<list.length ; i++ ){
+                whole[i] = isWhole(list[i]);
+                if ( whole[i] ) continue;
+                for ( Polygon part : list[i].parts ){
+                    ringSize++;
+                    vertexSize += part.size();
+                }
+            }
+            ringStart = new int[ringSize + 1];
+            ringCoords = new double[vertexSize * 2];
+            int r = 0, v = 0;
+            for ( int i=0 ; i<list.length ; i++ ){
+                siteRings[i] = r;
+                if ( whole[i] ) continue;
+                for ( Polygon part : list[i].parts ){
+                    ringStart[r++] = v;
+                    for ( Point p : part ){
+                        ringCoords[2*v] = p.getX();
+                        ringCoords[2*v+1] = p.getY();
+                        v++;
+                    }
+                }
+            }
+            siteRings[list.length] = r;
+            ringStart[r] = v;
+        }else{
+            whole = null;
+            siteRings = null;
+            ringStart = null;
+            ringCoords = null;
+        }
+
+        // 区画と領域の組 : 区画index << 32 | 母点id << 1 | 区画全体を含むか
+        Pairs pairs = new Pairs();
+        for ( int i=0 ; i<list.length ; i++ ){
+            rasterize(i, list[i].points, pairs);
+        }
+        long[] keys = pairs.sorted();
+
+        cells = new int[columns * rows];
+        Arrays.fill(cells, -1);
+        int[] candidates = new int[16];
+        int size = 0;
+        int ambiguous = 0;
+        for ( int start=0, end ; start<keys.length ; start=end ){
+            final int cell = (int)(keys[start] >>> 32);
+            int owner = -1;
+            int distinct = 0;
+            int previous = -1;
+            for ( end=start ; end<keys.length && (int)(keys[end] >>> 32) == cell ; end++ ){
+                int low = (int)keys[end];
+                int site = low >>> 1;
+                if ( (low & 1) != 0 ) owner = site;
+                if ( site != previous ) distinct++;
+                previous = site;
+            }
+            if ( owner < 0 && distinct == 1 ) owner = previous;
+            if ( owner >= 0 && (whole == null || whole[owner]) ){
+                cells[cell] = owner;
+                continue;
+            }
+            if ( owner >= 0 && siteRings[owner] == siteRings[owner + 1] ){
+                // 領域全体が境界の外側
+                continue;
+            }
+            // 候補 : 個数に続けて母点id
+            if ( size + distinct + 1 > candidates.length ){
+                candidates = Arrays.copyOf(candidates, Math.max(candidates.length * 2, size + distinct + 1));
+            }
+            cells[cell] = -(size + 2);
+            if ( owner >= 0 ){
+                // 区画全体を含むが境界に切り取られた領域 境界の内外のみ判定する
+                candidates[size++] = 1;
+                candidates[size++] = owner;
+                ambiguous++;
+                continue;
+            }
+            candidates[size++] = distinct;
+            previous = -1;
+            for ( int k=start ; k<end ; k++ ){
+                int site = (int)keys[k] >>> 1;
+                if ( site != previous ) candidates[size++] = site;
+                previous = site;
+            }
+            ambiguous++;
+        }
+        this.candidates = Arrays.copyOf(candidates, size);
+        this.ambiguous = ambiguous;
+    }
+
+    private final int columns, rows;
+    private final double left, bottom, width, height;
+    /* 母点の座標値 [x0, y0, x1, y1, ...] */
+    private final double[] sites;
+    /* 0以上なら母点id, -1なら領域外, それ以外は候補の位置 -(offset + 2) */
+    private final int[] cells;
+    private final int[] candidates;
+    private final int ambiguous;
+    /*
+     * 境界の多角形で切り取った図の場合のみ. whole[i] : 母点iの領域が境界に切り取られていないか.
+     * 切り取られた領域の多角形は [siteRings[i], siteRings[i+1]),
+     * 多角形rの頂点の座標値は ringCoords の [2*ringStart[r], 2*ringStart[r+1])
+     */
+    private final boolean[] whole;
+    private final int[] siteRings, ringStart;
+    private final double[] ringCoords;
+
+    /**
+     * 境界に切り取られた多角形が元の領域と一致するか
+     */
+    private static boolean isWhole(VoronoiDiagram.VoronoiArea area){
+        if ( area.parts.length != 1 || area.parts[0].size() != area.points.length ) return false;
+        List<Point> points = area.parts[0].getPoints();
+        for ( int i=0 ; i<area.points.length ; i++ ){
+            if ( !area.points[i].equals(points.get(i)) ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 要素を追加しながら大きくするlongの配列
+     */
+    private static final class Pairs {
+
+        private long[] values = new long[64];
+        private int size = 0;
+
+        void add(long value){
+            if ( size == values.length ) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        long[] sorted(){
+            long[] array = Arrays.copyOf(values, size);
+            Arrays.parallelSort(array);
+            return array;
+        }
+    }
+
+    /**
+     * 凸多角形の領域と重なる区画を行ごとに求める
+     */
+    private void rasterize(int site, Point[] polygon, Pairs pairs){
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for ( Point p : polygon ){
+            minY = Math.min(minY, p.getY());
+            maxY = Math.max(maxY, p.getY());
+        }
+        // 浮動小数の誤差で区画を取りこぼさないよう広めに、全体を含む判定は狭めにとる
+        final double margin = 1e-9 * Math.max(width * columns, height * rows);
+        int rowStart = clamp((int)Math.floor((minY - margin - bottom) / height), rows);
+        int rowEnd = clamp((int)Math.floor((maxY + margin - bottom) / height), rows);
+        for ( int row=rowStart ; row<=rowEnd ; row++ ){
+            final double y0 = bottom + row * height;
+            final double y1 = y0 + height;
+            // 行と重なる部分のx方向の範囲
+            double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+            for ( int i=0 ; i<polygon.length ; i++ ){
+                Point a = polygon[i];
+                Point b = polygon[(i + 1) % polygon.length];
+                double ay = a.getY(), by = b.getY();
+                if ( Math.max(ay, by) < y0 - margin || Math.min(ay, by) > y1 + margin ) continue;
+                double t0 = 0, t1 = 1;
+                if ( ay != by ){
+                    double s0 = (y0 - margin - ay) / (by - ay);
+                    double s1 = (y1 + margin - ay) / (by - ay);
+                    t0 = Math.max(0, Math.min(s0, s1));
+                    t1 = Math.min(1, Math.max(s0, s1));
+                }
+                double x0 = a.getX() + (b.getX() - a.getX()) * t0;
+                double x1 = a.getX() + (b.getX() - a.getX()) * t1;
+                minX = Math.min(minX, Math.min(x0, x1));
+                maxX = Math.max(maxX, Math.max(x0, x1));
+            }
+            if ( minX > maxX ) continue;
+            // 行の上下端の両方で領域の内側にある範囲は、凸なので行の高さ全体で内側
+            int innerStart = Integer.MAX_VALUE, innerEnd = Integer.MIN_VALUE;
+            if ( minY < y0 - margin && maxY > y1 + margin ){
+                double[] lower = crossSection(polygon, y0);
+                double[] upper = crossSection(polygon, y1);
+                if ( lower != null && upper != null ){
+                    double from = Math.max(lower[0], upper[0]) + margin;
+                    double to = Math.min(lower[1], upper[1]) - margin;
+                    innerStart = (int)Math.ceil((from - left) / width);
+                    innerEnd = (int)Math.floor((to - left) / width) - 1;
+                }
+            }
+            int columnStart = clamp((int)Math.floor((minX - margin - left) / width), columns);
+            int columnEnd = clamp((int)Math.floor((maxX + margin - left) / width), columns);
+            for ( int column=columnStart ; column<=columnEnd ; column++ ){
+                long full = column >= innerStart && column <= innerEnd ? 1 : 0;
+                pairs.add(((long)(row * columns + column) << 32) | ((long)site << 1) | full);
+            }
+        }
+    }
+
+    /**
+     * 凸多角形と水平線の交わる区間
+     * @return {@code [minX, maxX]} 交わらなければNull
+     */
+    private static double[] crossSection(Point[] polygon, double y){
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        for ( int i=0 ; i<polygon.length ; i++ ){
+            Point a = polygon[i];
+            Point b = polygon[(i + 1) % polygon.length];
+            double ay = a.getY(), by = b.getY();
+            if ( (ay - y) * (by - y) > 0 || ay == by ) continue;
+            double x = a.getX() + (b.getX() - a.getX()) * (y - ay) / (by - ay);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+        }
+        return minX > maxX ? null : new double[]{minX, maxX};
+    }
+
+    private static int clamp(int index, int size){
+        return Math.max(0, Math.min(size - 1, index));
+    }
+
+    /**
+     * 点の属するボロノイ領域を求める
+     * @return 母点のid. 格子の範囲外、または境界の多角形で切り取った図で境界の外側や穴にあるなら-1.
+     * 境界の辺上の点はどちらとも判定されうる
+     */
+    public int find(double x, double y){
+        double u = (x - left) / width;
+        double v = (y - bottom) / height;
+        if ( !(u >= 0 && u <= columns && v >= 0 && v <= rows) ) return -1;
+        int value = cells[Math.min((int)v, rows - 1) * columns + Math.min((int)u, columns - 1)];
+        if ( value >= -1 ) return value;
+        // 候補から最も近い母点
+        final int offset = -value - 2;
+        final int size = candidates[offset];
+        int nearest = -1;
+        double min = Double.POSITIVE_INFINITY;
+        for ( int k=1 ; k<=size ; k++ ){
+            int site = candidates[offset + k];
+            double dx = sites[2*site] - x;
+            double dy = sites[2*site+1] - y;
+            double d = dx * dx + dy * dy;
+            if ( d < min ){
+                min = d;
+                nearest = site;
+            }
+        }
+        return whole == null || whole[nearest] || isInside(nearest, x, y) ? nearest : -1;
+    }
+
+    /**
+     * 境界に切り取られた領域の内側にあるか. 偶奇規則で判定する
+     */
+    private boolean isInside(int site, double x, double y){
+        boolean inside = false;
+        for ( int r=siteRings[site] ; r<siteRings[site + 1] ; r++ ){
+            final int start = ringStart[r], end = ringStart[r + 1];
+            for ( int i=start, j=end-1 ; i<end ; j=i++ ){
+                double ay = ringCoords[2*j+1], by = ringCoords[2*i+1];
+                if ( (ay > y) == (by > y) ) continue;
+                double ax = ringCoords[2*j], bx = ringCoords[2*i];
+                if ( x < ax + (y - ay) * (bx - ax) / (by - ay) ) inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * @see #find(double, double)
+     */
+    public int find(Point point){
+        return find(point.getX(), point.getY());
+    }
+
+    /**
+     * 母点の数
+     */
+    public int getSiteSize(){
+        return sites.length >> 1;
+    }
+
+    public double getSiteX(int id){
+        return sites[2*id];
+    }
+
+    public double getSiteY(int id){
+        return sites[2*id+1];
+    }
+
+    /**
+     * 指定したidの母点. 呼び出す度に生成する
+     */
+    public Point getSite(int id){
+        return new BasePoint(getSiteX(id), getSiteY(id));
+    }
+
+    public int getColumnSize(){
+        return columns;
+    }
+
+    public int getRowSize(){
+        return rows;
+    }
+
+    /**
+     * 候補を保持する（ボロノイ図の辺や境界が横切る）区画の数
+     */
+    public int getAmbiguousCellSize(){
+        return ambiguous;
+    }
+
+}
@@ -0,0 +1,53 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+class AllocationTest {
+
+    private final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    /**
+     * 逐次追加法で分割する間に確保したメモリ量を計測する.<br>
+     * 外郭の三角形を母点から十分遠ざけ、凸包を整える後処理をほとんど発生させない
+     */
+    private long measure(List<Point> points, long seed){
+        DelaunayDiagram diagram = new DelaunayDiagram(points);
+        diagram.setInsertionOrder(InsertionOrder.RANDOM);
+        diagram.setRandomSeed(seed);
+        long thread = Thread.currentThread().getId();
+        long start = bean.getThreadAllocatedBytes(thread);
+        diagram.split(new Rectangle(-100000, 101000, 101000, -100000));
+        return bean.getThreadAllocatedBytes(thread) - start;
+    }
+
+    /**
+     * フリップ操作や三角形を辿る操作でオブジェクトを生成しない.<br>
+     * 同じ母点集合を異なる順序で追加すると、フリップや辿る三角形の回数は変わるが生成するオブジェクトは変わらない.
+     * フリップ毎に辺をひとつ生成するだけでも数百回の差が数KBの差になる
+     */
+    @Test
+    void steadyStateInsertion(){
+        assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+        int size = 20000;
+        Random random = new Random(size);
+        List<Point> points = new ArrayList<>(size);
+        for ( int i=0 ; i<size ; i++ ){
+            points.add(new BasePoint(random.nextDouble() * 1000, random.nextDouble() * 1000));
+        }
+        // JITコンパイルを済ませる
+        for ( int i=0 ; i<3 ; i++ ) measure(points, i);
+        long expected = measure(points, 10);
+        for ( long seed=11 ; seed<16 ; seed++ ){
+            long bytes = measure(points, seed);
+            // 作業キューの配列の拡張と凸包の後処理は順序により異なりうる
+            assertTrue(Math.abs(bytes - expected) < 4096, String.format(Locale.US, "allocated %d bytes, expected %d", bytes, expected));
+        }
+    }
+
+}
@@ -0,0 +1,342 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DelaunayDiagramTest {
+
+    private static List<Point> randomPoints(long seed, int size, double width, double height){
+        Random random = new Random(seed);
+        List<Point> points = new ArrayList<>(size);
+        for ( int i=0 ; i<size ; i++ ){
+            points.add(new BasePoint(random.nextDouble() * width, random.nextDouble() * height));
+        }
+        return points;
+    }
+
+    /* 外郭の三角形が母点から十分遠くなる矩形 */
+    private static final Rectangle FAR_BORDER = new Rectangle(-100000, 101000, 101000, -100000);
+
+    private static DelaunayDiagram split(List<Point> points, Rectangle border, DelaunayDiagram.Algorithm algorithm){
+        DelaunayDiagram diagram = new DelaunayDiagram(points);
+        diagram.setAlgorithm(algorithm);
+        diagram.split(border);
+        return diagram;
+    }
+
+    /**
+     * どの三角形の外接円も他の母点を含まず、全ての母点がいずれかの三角形の頂点になる
+     */
+    private static void assertDelaunay(List<Point> points, Collection<Triangle> triangles){
+        Set<Point> vertices = new HashSet<>();
+        for ( Triangle t : triangles ){
+            vertices.add(t.a);
+            vertices.add(t.b);
+            vertices.add(t.c);
+            for ( Point p : points ){
+                if ( p == t.a || p == t.b || p == t.c ) continue;
+                if ( inCircle(t.a, t.b, t.c, p) ) fail(t + " contains " + p);
+            }
+        }
+        assertEquals(new HashSet<>(points), vertices);
+    }
+
+    private static boolean inCircle(Point a, Point b, Point c, Point p){
+        double ax = a.getX() - p.getX(), ay = a.getY() - p.getY();
+        double bx = b.getX() - p.getX(), by = b.getY() - p.getY();
+        double cx = c.getX() - p.getX(), cy = c.getY() - p.getY();
+        double det = (ax * ax + ay * ay) * (bx * cy - cx * by)
+                - (bx * bx + by * by) * (ax * cy - cx * ay)
+                + (cx * cx + cy * cy) * (ax * by - bx * ay);
+        double orient = (b.getX() - a.getX()) * (c.getY() - a.getY()) - (b.getY() - a.getY()) * (c.getX() - a.getX());
+        return (orient > 0 ? det : -det) > 1e-6;
+    }
+
+    /**
+     * sweep-hull法の分割はドロネー分割になる
+     */
+    @Test
+    void splitSweepHull(){
+        Rectangle border = new Rectangle(-1, 1001, 1001, -1);
+        for ( int size : new int[]{3, 10, 300, 2000} ){
+            List<Point> points = randomPoints(size, size, 1000, 1000);
+            DelaunayDiagram diagram = split(points, border, DelaunayDiagram.Algorithm.SWEEP_HULL);
+            assertDelaunay(points, diagram.getTriangles());
+        }
+    }
+
+    /**
+     * 逐次追加法でもsweep-hull法と同じ分割が得られる.<br>
+     * 外郭の三角形が母点に近く凸包付近に凹みが残る場合も同様
+     */
+    @Test
+    void splitIncremental(){
+        for ( Rectangle border : new Rectangle[]{FAR_BORDER, new Rectangle(-1, 1001, 1001, -1)} ){
+            for ( int size : new int[]{3, 10, 300, 2000, 20000} ){
+                List<Point> points = randomPoints(size, size, 1000, 1000);
+                Set<Edge> expected = split(points, border, DelaunayDiagram.Algorithm.SWEEP_HULL).getEdges();
+                assertEquals(expected, split(points, border, DelaunayDiagram.Algorithm.INCREMENTAL).getEdges(), "size=" + size);
+            }
+        }
+    }
+
+    /**
+     * 外郭の三角形に比べて細長く分布する母点でも凸包に沿って分割できる
+     */
+    @Test
+    void splitWideFrame(){
+        Rectangle border = new Rectangle(-1, 2, 10001, -1);
+        for ( long seed=0 ; seed<20 ; seed++ ){
+            List<Point> points = randomPoints(seed, 50, 10000, 1);
+            Set<Edge> expected = split(points, border, DelaunayDiagram.Algorithm.SWEEP_HULL).getEdges();
+            assertEquals(expected, split(points, border, DelaunayDiagram.Algorithm.INCREMENTAL).getEdges(), "seed=" + seed);
+        }
+    }
+
+    /**
+     * 凸包を分割し直した後も母点を追加できる
+     */
+    @Test
+    void insertAfterWideFrame(){
+        Rectangle border = new Rectangle(-1, 2, 10001, -1);
+        List<Point> points = randomPoints(1, 50, 10000, 1);
+        DelaunayDiagram diagram = split(points, border, DelaunayDiagram.Algorithm.INCREMENTAL);
+        Point point = new BasePoint(5000.5, 0.5);
+        assertFalse(diagram.insert(point).isEmpty());
+        points.add(point);
+        assertEquals(split(points, border, DelaunayDiagram.Algorithm.SWEEP_HULL).getEdges(), diagram.getEdges());
+    }
+
+    /**
+     * 分割統治法は並列化の有無によらずsweep-hull法と同じ分割を得る
+     */
+    @Test
+    void splitDivideAndConquer(){
+        Rectangle border = new Rectangle(-1, 1001, 1001, -1);
+        for ( int size : new int[]{3, 4, 10, 300, 5000} ){
+            List<Point> points = randomPoints(size, size, 1000, 1000);
+            Set<Triangle> expected = split(points, border, DelaunayDiagram.Algorithm.SWEEP_HULL).getTriangles();
+            for ( int parallelism : new int[]{1, 4} ){
+                DelaunayDiagram diagram = new DelaunayDiagram(points);
+                diagram.setAlgorithm(DelaunayDiagram.Algorithm.DIVIDE_AND_CONQUER);
+                diagram.setParallelism(parallelism);
+                diagram.setSequentialThreshold(64);
+                diagram.split(border);
+                assertEquals(expected, diagram.getTriangles(), "size=" + size + " parallelism=" + parallelism);
+                assertEquals(new FlatTriangulation(points).getTriangles(), diagram.getTriangles());
+            }
+        }
+    }
+
+    /**
+     * 分割統治法の三角形と凸包はFlatTriangulationと同じく時計回りに並ぶ
+     */
+    @Test
+    void divideAndConquerWinding(){
+        List<Point> points = randomPoints(11, 500, 1000, 1000);
+        FlatTriangulation mesh = DivideAndConquer.triangulate(points, 1, 64);
+        double[] coords = mesh.getCoordinates();
+        int[] triangles = mesh.getTriangleIndices();
+        for ( int i=0 ; i<triangles.length ; i+=3 ){
+            assertTrue(orient(coords, triangles[i], triangles[i+1], triangles[i+2]) < 0);
+        }
+        int[] hull = mesh.getHull();
+        for ( int i=0 ; i<hull.length ; i++ ){
+            assertTrue(orient(coords, hull[i], hull[(i+1) % hull.length], hull[(i+2) % hull.length]) <= 0);
+        }
+    }
+
+    private static double orient(double[] coords, int a, int b, int c){
+        return (coords[2*b] - coords[2*a]) * (coords[2*c+1] - coords[2*a+1])
+                - (coords[2*b+1] - coords[2*a+1]) * (coords[2*c] - coords[2*a]);
+    }
+
+    /**
+     * visitorへ渡される三角形と辺は通常の分割の結果と一致し、それぞれちょうど一度ずつ渡される
+     */
+    @Test
+    void visitMatchesSplit(){
+        Rectangle border = new Rectangle(-1, 1001, 1001, -1);
+        List<Point> points = randomPoints(13, 1000, 1000, 1000);
+        for ( DelaunayDiagram.Algorithm algorithm : DelaunayDiagram.Algorithm.values() ){
+            DelaunayDiagram expected = split(points, border, algorithm);
+            final List<Triangle> triangles = new ArrayList<>();
+            final Map<Edge, List<Triangle>> edges = new HashMap<>();
+            DelaunayDiagram diagram = new DelaunayDiagram(points);
+            diagram.setAlgorithm(algorithm);
+            diagram.split(border, new DiagramVisitor() {
+                @Override
+                public void visitTriangle(Triangle triangle){
+                    triangles.add(triangle);
+                }
+
+                @Override
+                public void visitEdge(Edge edge, Triangle triangle1, Triangle triangle2){
+                    List<Triangle> list = new ArrayList<>();
+                    list.add(triangle1);
+                    if ( triangle2 != null ) list.add(triangle2);
+                    assertNull(edges.put(edge, list), edge.toString());
+                }
+            });
+            assertEquals(expected.getTriangles().size(), triangles.size(), algorithm.name());
+            assertEquals(expected.getTriangles(), new HashSet<>(triangles), algorithm.name());
+            assertEquals(expected.getEdges(), edges.keySet(), algorithm.name());
+            for ( Map.Entry<Edge, List<Triangle>> entry : edges.entrySet() ){
+                Edge edge = entry.getKey();
+                for ( Triangle t : entry.getValue() ){
+                    assertTrue(expected.getTriangles().contains(t), t.toString());
+                    assertTrue(t.isVertex(edge.a) && t.isVertex(edge.b), t + " " + edge);
+                }
+            }
+            // 凸包上の辺のみ片側の三角形を持たない
+            int outer = 0;
+            for ( List<Triangle> list : edges.values() ){
+                if ( list.size() == 1 ) outer++;
+            }
+            assertEquals(new FlatTriangulation(points).getHull().length, outer, algorithm.name());
+            assertNull(diagram.getTriangles());
+            assertNull(diagram.getEdges());
+            assertThrows(IllegalStateException.class, () -> diagram.insert(new BasePoint(500.5, 500.5)));
+        }
+    }
+
+    /**
+     * 座標値の配列から計算した分割は母点から計算した分割と一致し、頂点indexは入力での位置になる
+     */
+    @Test
+    void triangulateArrays(){
+        List<Point> points = randomPoints(19, 1000, 1000, 1000);
+        double[] xs = new double[points.size() + 1];
+        double[] ys = new double[points.size() + 1];
+        for ( int i=0 ; i<points.size() ; i++ ){
+            xs[i] = points.get(i).getX();
+            ys[i] = points.get(i).getY();
+        }
+        // 座標値が一致する点は分割に含まれない
+        xs[points.size()] = xs[3];
+        ys[points.size()] = ys[3];
+        FlatTriangulation mesh = DelaunayDiagram.triangulate(xs, ys);
+        assertEquals(new FlatTriangulation(points).getTriangles(), mesh.getTriangles());
+        Set<Integer> used = new HashSet<>();
+        for ( int index : mesh.getTriangleIndices() ){
+            used.add(index);
+            assertEquals(xs[index], mesh.getCoordinates()[2*index]);
+            assertEquals(ys[index], mesh.getCoordinates()[2*index+1]);
+        }
+        assertEquals(points.size(), used.size());
+        assertTrue(used.contains(3) ^ used.contains(points.size()));
+        assertThrows(IllegalArgumentException.class, () -> DelaunayDiagram.triangulate(new double[3], new double[2]));
+    }
+
+    /**
+     * リトルエンディアンのバッファのビューからも同じ分割を計算し、バッファの位置は変化しない
+     */
+    @Test
+    void triangulateBuffer(){
+        List<Point> points = randomPoints(23, 1000, 1000, 1000);
+        ByteBuffer bytes = ByteBuffer.allocateDirect((points.size() + 1) * 16).order(ByteOrder.LITTLE_ENDIAN);
+        DoubleBuffer buffer = bytes.asDoubleBuffer();
+        // 先頭の組は読み飛ばす
+        buffer.put(-1.0).put(-1.0);
+        for ( Point p : points ){
+            buffer.put(p.getX()).put(p.getY());
+        }
+        ((Buffer)buffer).position(2);
+        FlatTriangulation mesh = DelaunayDiagram.triangulate(buffer);
+        assertEquals(2, buffer.position());
+        assertEquals(new FlatTriangulation(points).getTriangles(), mesh.getTriangles());
+        assertEquals(points.size(), mesh.getPointSize());
+        assertEquals(points.get(0).getX(), mesh.getCoordinates()[0]);
+
+        ((Buffer)buffer).position(1);
+        assertThrows(IllegalArgumentException.class, () -> DelaunayDiagram.triangulate(buffer));
+    }
+
+    /**
+     * 母点を追加した結果は分割し直した結果と一致する
+     */
+    @Test
+    void insertMatchesRebuild(){
+        Rectangle border = new Rectangle(-1, 1001, 1001, -1);
+        List<Point> points = randomPoints(7, 500, 1000, 1000);
+        List<Point> added = randomPoints(8, 100, 1000, 1000);
+        DelaunayDiagram diagram = split(points, border, DelaunayDiagram.Algorithm.INCREMENTAL);
+        List<Point> current = new ArrayList<>(points);
+        for ( Point point : added ){
+            assertFalse(diagram.insert(point).isEmpty());
+            current.add(point);
+        }
+        assertTrue(diagram.insert(added.get(0)).isEmpty());
+        assertEquals(split(current, border, DelaunayDiagram.Algorithm.SWEEP_HULL).getEdges(), diagram.getEdges());
+        assertEquals(new FlatTriangulation(current).getTriangles(), diagram.getTriangles());
+    }
+
+    /**
+     * 許容誤差以内の点は分割の前後によらず代表点にまとめられる
+     */
+    @Test
+    void mergeWithinTolerance(){
+        Rectangle border = new Rectangle(-1, 1001, 1001, -1);
+        double tolerance = 1e-7;
+        List<Point> points = randomPoints(17, 500, 1000, 1000);
+        List<Point> input = new ArrayList<>(points);
+        Random random = new Random(18);
+        for ( Point p : points ){
+            input.add(new BasePoint(p.getX() + (random.nextDouble() - 0.5) * 1e-7, p.getY() + (random.nextDouble() - 0.5) * 1e-7));
+        }
+        DelaunayDiagram diagram = new DelaunayDiagram(input, tolerance);
+        assertEquals(points.size(), diagram.getPoints().size());
+        for ( Point p : input ){
+            Point representative = diagram.getRepresentative(p);
+            assertTrue(diagram.getPoints().contains(representative), p.toString());
+            assertTrue(representative.measure(p) <= tolerance, p.toString());
+        }
+        diagram.split(border);
+        Set<Edge> expected = split(new ArrayList<>(diagram.getPoints()), border, DelaunayDiagram.Algorithm.SWEEP_HULL).getEdges();
+        assertEquals(expected, diagram.getEdges());
+
+        // 分割後に追加する点も同様にまとめる
+        for ( int i=0 ; i<points.size() ; i+=10 ){
+            Point site = diagram.getRepresentative(points.get(i));
+            Point near = new BasePoint(site.getX() + 5e-8, site.getY() - 5e-8);
+            assertTrue(diagram.insert(near).isEmpty(), near.toString());
+            assertSame(site, diagram.getRepresentative(near));
+        }
+        assertEquals(expected, diagram.getEdges());
+        Point far = new BasePoint(500.5, 500.5);
+        assertFalse(diagram.insert(far).isEmpty());
+        assertSame(far, diagram.getRepresentative(far));
+    }
+
+    /**
+     * 母点を削除した結果は分割し直した結果と一致する
+     */
+    @Test
+    void removeMatchesRebuild(){
+        Rectangle border = new Rectangle(-1, 1001, 1001, -1);
+        List<Point> points = randomPoints(9, 600, 1000, 1000);
+        DelaunayDiagram diagram = split(points, border, DelaunayDiagram.Algorithm.INCREMENTAL);
+        List<Point> current = new ArrayList<>(points);
+        // 凸包上の点も含めて削除する
+        current.sort(Point::compare);
+        for ( int i=0 ; i<200 ; i++ ){
+            Point point = current.remove(i % 2 == 0 ? 0 : current.size() - 1 - i);
+            assertFalse(diagram.remove(point).isEmpty());
+        }
+        assertTrue(diagram.remove(new BasePoint(-1, -1)).isEmpty());
+        assertEquals(split(current, border, DelaunayDiagram.Algorithm.SWEEP_HULL).getEdges(), diagram.getEdges());
+        assertEquals(new FlatTriangulation(current).getTriangles(), diagram.getTriangles());
+        Point point = points.get(0);
+        diagram.insert(point);
+        current.add(point);
+        assertEquals(new FlatTriangulation(current).getTriangles(), diagram.getTriangles());
+    }
+
+}
@@ -0,0 +1,98 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagramListenerTest {
+
+    private static class Recorder implements DiagramListener {
+
+        final Map<Phase, Integer> progress = new EnumMap<>(Phase.class);
+        final List<Phase> completed = new ArrayList<>();
+        Metrics metrics;
+
+        @Override
+        public void onProgress(Phase phase, int done, int total){
+            assertTrue(done <= total, phase.name());
+            Integer previous = progress.put(phase, done);
+            if ( previous != null ) assertTrue(previous < done, phase.name());
+            assertFalse(completed.contains(phase), phase.name());
+        }
+
+        @Override
+        public void onPhaseCompleted(Phase phase, int count, long elapsedNanos){
+            assertTrue(elapsedNanos >= 0);
+            completed.add(phase);
+        }
+
+        @Override
+        public void onCompleted(Metrics metrics){
+            assertNull(this.metrics);
+            this.metrics = metrics;
+        }
+    }
+
+    private static List<Point> randomPoints(int size){
+        Random random = new Random(size);
+        List<Point> points = new ArrayList<>(size);
+        for ( int i=0 ; i<size ; i++ ){
+            points.add(new BasePoint(random.nextDouble() * 300, random.nextDouble() * 300));
+        }
+        return points;
+    }
+
+    /**
+     * 分割の各段階の進捗と計測値が通知され、標準出力には何も書き込まない
+     */
+    @Test
+    void splitReportsProgress(){
+        List<Point> points = randomPoints(5000);
+        VoronoiDiagram diagram = new VoronoiDiagram(points);
+        Recorder recorder = new Recorder();
+        diagram.setListener(recorder);
+        PrintStream out = System.out;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(buffer));
+        try {
+            diagram.split(new Rectangle(-3, 303, 303, -3));
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals(0, buffer.size());
+        assertTrue(recorder.completed.containsAll(Arrays.asList(
+                DiagramListener.Phase.TRIANGULATION,
+                DiagramListener.Phase.VORONOI_EDGES,
+                DiagramListener.Phase.VORONOI_AREAS
+        )));
+        assertTrue(recorder.progress.get(DiagramListener.Phase.TRIANGULATION) > 0);
+        DiagramListener.Metrics metrics = recorder.metrics;
+        assertSame(diagram.getMetrics(), metrics);
+        assertEquals(points.size(), metrics.getPointsInserted());
+        assertTrue(metrics.getFlips() > points.size());
+        assertTrue(metrics.getLocationSteps() >= points.size());
+        assertTrue(metrics.getDuration(DiagramListener.Phase.TRIANGULATION) > 0);
+    }
+
+    /**
+     * 進捗の通知は段階ごとに間引かれる
+     */
+    @Test
+    void progressThrottled(){
+        final int[] count = {0};
+        DiagramListener listener = new DiagramListener() {
+            @Override
+            public void onProgress(Phase phase, int done, int total){
+                count[0]++;
+            }
+        };
+        Progress progress = new Progress(listener, DiagramListener.Phase.TRIANGULATION, 100000);
+        for ( int i=1 ; i<=100000 ; i++ ) progress.update(i);
+        assertEquals(Progress.STEPS, count[0]);
+    }
+
+}
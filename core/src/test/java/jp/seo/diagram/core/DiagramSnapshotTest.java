@@ -0,0 +1,64 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagramSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private static VoronoiDiagram split(){
+        Random random = new Random(5);
+        List<Point> points = new ArrayList<>();
+        for ( int i=0 ; i<500 ; i++ ){
+            points.add(new BasePoint(random.nextDouble() * 100, random.nextDouble() * 100));
+        }
+        VoronoiDiagram diagram = new VoronoiDiagram(points);
+        diagram.split(new Rectangle(-10, 110, 110, -10));
+        return diagram;
+    }
+
+    @Test
+    void writeAndLoad() throws IOException {
+        VoronoiDiagram diagram = split();
+        Path file = directory.resolve("diagram.bin");
+        DiagramSnapshot.write(diagram, file);
+        DiagramSnapshot snapshot = DiagramSnapshot.load(file);
+        assertEquals(diagram.getTriangles().size(), snapshot.getTriangleSize());
+        assertEquals(new HashSet<>(diagram.getTriangles()), snapshot.toTriangulation().getTriangles());
+        assertTrue(snapshot.hasCells());
+        for ( int i=0 ; i<snapshot.getPointSize() ; i++ ){
+            VoronoiDiagram.VoronoiArea area = diagram.getVoronoiArea(snapshot.getPoint(i));
+            assertEquals(area.points.length, snapshot.getCellSize(i));
+            assertEquals(area.clipped, snapshot.isCellClipped(i));
+            for ( int k=0 ; k<area.points.length ; k++ ){
+                assertEquals(area.points[k].getX(), snapshot.getCellX(i, k));
+                assertEquals(area.points[k].getY(), snapshot.getCellY(i, k));
+            }
+        }
+    }
+
+    /**
+     * ヘッダの要素数に対してファイルが短い場合は読み込み時に検出する
+     */
+    @Test
+    void loadTruncated() throws IOException {
+        Path file = directory.resolve("truncated.bin");
+        DiagramSnapshot.write(split(), file);
+        try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE) ){
+            channel.truncate(channel.size() - 8);
+        }
+        IOException e = assertThrows(IOException.class, () -> DiagramSnapshot.load(file));
+        assertTrue(e.getMessage().startsWith("snapshot truncated"), e.getMessage());
+    }
+
+}
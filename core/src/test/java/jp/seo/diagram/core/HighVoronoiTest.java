@@ -0,0 +1,56 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HighVoronoiTest {
+
+    private final double error = Setting.error;
+
+    @AfterEach
+    void restoreError(){
+        // HighVoronoi#solve は Setting.error を書き換える
+        Setting.error = error;
+    }
+
+    /**
+     * 二等分線の交点は{@link Setting#error}の誤差を許容して枠の三角形に含まれるか判定される
+     */
+    @Test
+    void solveWithToleranceOnFrame(){
+        Random random = new Random(3);
+        List<Point> points = new ArrayList<>();
+        for ( int i=0 ; i<150 ; i++ ){
+            points.add(new BasePoint(random.nextDouble() * 100, random.nextDouble() * 100));
+        }
+        Triangle frame = new Triangle(new BasePoint(-1000, -1000), new BasePoint(1200, -1000), new BasePoint(50, 1500));
+        HighVoronoi voronoi = new HighVoronoi(frame);
+        final int[] resolved = {0};
+        Polygon[] result = voronoi.solve(5, points.get(0),
+                point -> {
+                    // 中心点以外のすべての点を隣接点とする
+                    List<Point> list = new ArrayList<>(points);
+                    list.remove(point);
+                    return list;
+                },
+                new HighVoronoi.ResultCallback() {
+                    @Override
+                    public void onResolved(int index, Polygon polygon, long time){
+                        resolved[0]++;
+                    }
+
+                    @Override
+                    public void onCompleted(Polygon[] results, long time){}
+                });
+        assertEquals(5, result.length);
+        assertEquals(5, resolved[0]);
+        for ( Polygon polygon : result ){
+            assertNotNull(polygon);
+        }
+    }
+
+}
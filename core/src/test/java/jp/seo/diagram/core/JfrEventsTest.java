@@ -0,0 +1,43 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class JfrEventsTest {
+
+    private static Class<?> recordingClass(){
+        try {
+            return Class.forName("jdk.jfr.Recording");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Test
+    void noEventAfterRecordingStops() throws Exception {
+        Class<?> recordingClass = recordingClass();
+        assumeTrue(recordingClass != null, "jdk.jfr is not available");
+
+        Object recording = recordingClass.getConstructor().newInstance();
+        recordingClass.getMethod("enable", String.class).invoke(recording, "jp.seo.diagram.Triangulation");
+        recordingClass.getMethod("start").invoke(recording);
+        try {
+            Object event = JfrEvents.begin(JfrEvents.Type.TRIANGULATION);
+            assertNotNull(event);
+            JfrEvents.commit(event, 10, 10);
+            // 記録対象でないイベント型は生成されない
+            recordingClass.getMethod("disable", String.class).invoke(recording, "jp.seo.diagram.Extraction");
+            assertNull(JfrEvents.begin(JfrEvents.Type.EXTRACTION));
+        } finally {
+            recordingClass.getMethod("stop").invoke(recording);
+            recordingClass.getMethod("close").invoke(recording);
+        }
+
+        // 記録が終了した後もFlightRecorderは初期化済みのまま
+        assertNull(JfrEvents.begin(JfrEvents.Type.TRIANGULATION));
+        assertNull(JfrEvents.begin(JfrEvents.Type.HIGH_VORONOI_LEVEL));
+    }
+
+}
@@ -0,0 +1,81 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LruCacheTest {
+
+    /**
+     * 上限を超えると最も長く参照されていない要素から破棄する
+     */
+    @Test
+    void evictLeastRecentlyUsed(){
+        final AtomicInteger loads = new AtomicInteger();
+        LruCache<Integer, String> cache = new LruCache<>(32);
+        // 16の倍数のキーはすべて同じ区画（上限2）に入る
+        cache.get(0, k -> "v" + k + "#" + loads.incrementAndGet());
+        cache.get(16, k -> "v" + k + "#" + loads.incrementAndGet());
+        assertEquals("v0#1", cache.get(0, k -> "v" + k + "#" + loads.incrementAndGet()));
+        cache.get(32, k -> "v" + k + "#" + loads.incrementAndGet());
+        assertEquals(3, loads.get());
+        assertEquals("v0#1", cache.get(0, k -> "v" + k + "#" + loads.incrementAndGet()));
+        assertEquals("v32#3", cache.get(32, k -> "v" + k + "#" + loads.incrementAndGet()));
+        assertEquals("v16#4", cache.get(16, k -> "v" + k + "#" + loads.incrementAndGet()));
+
+        for ( int i=0 ; i<1000 ; i++ ){
+            cache.get(i, k -> "v" + k);
+            assertTrue(cache.size() <= 32);
+        }
+        cache.remove(999);
+        assertEquals("x", cache.get(999, k -> "x"));
+        assertNull(cache.get(-1, k -> null));
+        assertThrows(IllegalArgumentException.class, () -> new LruCache<>(0));
+    }
+
+    /**
+     * 複数のスレッドから同時に要求しても、同じキーには同じ値を返す
+     */
+    @Test
+    void concurrentGet() throws Exception {
+        final int size = 500;
+        final int threads = 8;
+        final LruCache<Integer, Object> cache = new LruCache<>(1024);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Object[]>> futures = new ArrayList<>();
+            for ( int t=0 ; t<threads ; t++ ){
+                final long seed = t;
+                futures.add(executor.submit(() -> {
+                    List<Integer> keys = new ArrayList<>();
+                    for ( int i=0 ; i<size ; i++ ) keys.add(i);
+                    Collections.shuffle(keys, new Random(seed));
+                    Object[] values = new Object[size];
+                    start.await();
+                    for ( int key : keys ){
+                        values[key] = cache.get(key, k -> new int[]{k});
+                    }
+                    return values;
+                }));
+            }
+            start.countDown();
+            Object[] expected = futures.get(0).get(30, TimeUnit.SECONDS);
+            for ( Future<Object[]> future : futures ){
+                Object[] values = future.get(30, TimeUnit.SECONDS);
+                for ( int i=0 ; i<size ; i++ ){
+                    assertEquals(i, ((int[])values[i])[0]);
+                    assertSame(expected[i], values[i]);
+                }
+            }
+            assertEquals(size, cache.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedRTreeTest {
+
+    private static double[] randomBoxes(long seed, int size){
+        Random random = new Random(seed);
+        double[] boxes = new double[size * 4];
+        for ( int i=0 ; i<size ; i++ ){
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            boxes[4*i] = x;
+            boxes[4*i+1] = y;
+            boxes[4*i+2] = x + random.nextDouble() * 30;
+            boxes[4*i+3] = y + random.nextDouble() * 30;
+        }
+        return boxes;
+    }
+
+    private static Set<Integer> search(PackedRTree<?> tree, double left, double bottom, double right, double top){
+        final Set<Integer> result = new HashSet<>();
+        tree.searchIndices(left, bottom, right, top, index -> assertTrue(result.add(index)));
+        return result;
+    }
+
+    /**
+     * 外接矩形が探索範囲と重なる要素を線形探索で求める
+     */
+    private static Set<Integer> scan(double[] boxes, double left, double bottom, double right, double top){
+        Set<Integer> result = new HashSet<>();
+        for ( int i=0 ; i<boxes.length/4 ; i++ ){
+            if ( boxes[4*i] > right || boxes[4*i+1] > top || boxes[4*i+2] < left || boxes[4*i+3] < bottom ) continue;
+            result.add(i);
+        }
+        return result;
+    }
+
+    /**
+     * 要素の数と構築に使うスレッド数によらず、探索結果は線形探索と一致する
+     */
+    @Test
+    void searchMatchesScan(){
+        Random random = new Random(1);
+        for ( int size : new int[]{0, 1, 17, 5000} ){
+            double[] boxes = randomBoxes(size, size);
+            List<Integer> items = new ArrayList<>();
+            for ( int i=0 ; i<size ; i++ ) items.add(i);
+            for ( int parallelism : new int[]{1, 4} ){
+                PackedRTree<Integer> tree = new PackedRTree<>(items, boxes, null, parallelism);
+                assertEquals(size, tree.size());
+                for ( int k=0 ; k<200 ; k++ ){
+                    double x = random.nextDouble() * 1100 - 50;
+                    double y = random.nextDouble() * 1100 - 50;
+                    double w = k % 10 == 0 ? 1200 : random.nextDouble() * 100;
+                    double h = k % 10 == 0 ? 1200 : random.nextDouble() * 100;
+                    String message = size + ":" + parallelism;
+                    assertEquals(scan(boxes, x, y, x + w, y + h), search(tree, x, y, x + w, y + h), message);
+                }
+                // 外接矩形の辺で接する
+                if ( size > 0 ){
+                    Set<Integer> found = search(tree, boxes[2], boxes[3], boxes[2] + 1, boxes[3] + 1);
+                    assertTrue(found.contains(0));
+                    List<Integer> values = new ArrayList<>();
+                    tree.search(new Rectangle(boxes[0], boxes[3], boxes[2], boxes[1]), values::add);
+                    assertTrue(values.contains(0));
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new PackedRTree<>(Arrays.asList(1, 2), new double[4], null, 1));
+    }
+
+    /**
+     * 外接矩形が重なる要素のうち判定を満たすものだけを返す
+     */
+    @Test
+    void intersectorFiltersHits(){
+        double[] boxes = randomBoxes(2, 3000);
+        List<Integer> items = new ArrayList<>();
+        for ( int i=0 ; i<3000 ; i++ ) items.add(i);
+        // 外接矩形に内接する円
+        PackedRTree.Intersector<Integer> circle = (i, l, b, r, t) -> {
+            double cx = (boxes[4*i] + boxes[4*i+2]) / 2;
+            double cy = (boxes[4*i+1] + boxes[4*i+3]) / 2;
+            double radius = Math.min(boxes[4*i+2] - boxes[4*i], boxes[4*i+3] - boxes[4*i+1]) / 2;
+            double dx = cx - Math.max(l, Math.min(r, cx));
+            double dy = cy - Math.max(b, Math.min(t, cy));
+            return dx * dx + dy * dy <= radius * radius;
+        };
+        PackedRTree<Integer> tree = new PackedRTree<>(items, boxes, circle, 1);
+        Random random = new Random(3);
+        for ( int k=0 ; k<200 ; k++ ){
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            Set<Integer> expected = new HashSet<>();
+            for ( int i : scan(boxes, x, y, x + 20, y + 20) ){
+                if ( circle.intersects(i, x, y, x + 20, y + 20) ) expected.add(i);
+            }
+            assertEquals(expected, search(tree, x, y, x + 20, y + 20));
+        }
+    }
+
+    /**
+     * 凸多角形と矩形の交差判定
+     */
+    @Test
+    void intersectsConvex(){
+        Point[] triangle = {new BasePoint(0, 0), new BasePoint(10, 0), new BasePoint(0, 10)};
+        assertTrue(PackedRTree.intersectsConvex(triangle, 1, 1, 2, 2));
+        assertTrue(PackedRTree.intersectsConvex(triangle, 4, 4, 20, 20));
+        // 外接矩形は重なるが斜辺の外側
+        assertFalse(PackedRTree.intersectsConvex(triangle, 6, 6, 20, 20));
+        // 時計回りでもよい
+        Point[] reversed = {triangle[0], triangle[2], triangle[1]};
+        assertTrue(PackedRTree.intersectsConvex(reversed, 4, 4, 20, 20));
+        assertFalse(PackedRTree.intersectsConvex(reversed, 6, 6, 20, 20));
+        // 矩形が多角形を含む
+        assertTrue(PackedRTree.intersectsConvex(triangle, -5, -5, 20, 20));
+    }
+
+    /**
+     * 図から構築した木の探索結果は全要素を判定した結果と一致する
+     */
+    @Test
+    void diagramMatchesScan(){
+        Random random = new Random(4);
+        List<Point> points = new ArrayList<>();
+        for ( int i=0 ; i<5000 ; i++ ){
+            points.add(new BasePoint(random.nextDouble() * 300, random.nextDouble() * 300));
+        }
+        Rectangle border = new Rectangle(-3, 303, 303, -3);
+        VoronoiDiagram diagram = new VoronoiDiagram(points);
+        assertThrows(IllegalStateException.class, () -> PackedRTree.ofVoronoiAreas(diagram));
+        assertThrows(IllegalStateException.class, () -> PackedRTree.ofTriangles(diagram));
+        diagram.setParallelism(4);
+        diagram.split(border);
+        VoronoiDiagram lazy = new VoronoiDiagram(points);
+        lazy.setLazyAreas(64);
+        lazy.split(border);
+
+        PackedRTree<VoronoiDiagram.VoronoiArea> areas = PackedRTree.ofVoronoiAreas(diagram);
+        PackedRTree<VoronoiDiagram.VoronoiArea> lazyAreas = PackedRTree.ofVoronoiAreas(lazy);
+        PackedRTree<Triangle> triangles = PackedRTree.ofTriangles(diagram);
+        assertEquals(points.size(), areas.size());
+        assertEquals(points.size(), lazyAreas.size());
+        assertEquals(diagram.getTriangles().size(), triangles.size());
+        for ( int k=0 ; k<100 ; k++ ){
+            final double x = random.nextDouble() * 300;
+            final double y = random.nextDouble() * 300;
+            final double w = random.nextDouble() * 20;
+            final double h = random.nextDouble() * 20;
+            Set<Point> expected = new HashSet<>();
+            for ( VoronoiDiagram.VoronoiArea area : diagram.getVoronoiAreas() ){
+                if ( PackedRTree.intersectsConvex(area.points, x, y, x + w, y + h) && !scan(bounds(area.points), x, y, x + w, y + h).isEmpty() ){
+                    expected.add(area.center);
+                }
+            }
+            Set<Point> found = new HashSet<>();
+            areas.search(x, y, x + w, y + h, area -> found.add(area.center));
+            assertEquals(expected, found);
+            found.clear();
+            lazyAreas.search(x, y, x + w, y + h, area -> found.add(area.center));
+            assertEquals(expected, found);
+
+            int count = 0;
+            for ( Triangle t : diagram.getTriangles() ){
+                Point[] vertices = {t.a, t.b, t.c};
+                if ( PackedRTree.intersectsConvex(vertices, x, y, x + w, y + h) && !scan(bounds(vertices), x, y, x + w, y + h).isEmpty() ){
+                    count++;
+                }
+            }
+            int[] hits = {0};
+            triangles.search(x, y, x + w, y + h, t -> hits[0]++);
+            assertEquals(count, hits[0]);
+        }
+    }
+
+    private static double[] bounds(Point[] polygon){
+        double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for ( Point p : polygon ){
+            box[0] = Math.min(box[0], p.getX());
+            box[1] = Math.min(box[1], p.getY());
+            box[2] = Math.max(box[2], p.getX());
+            box[3] = Math.max(box[3], p.getY());
+        }
+        return box;
+    }
+
+}
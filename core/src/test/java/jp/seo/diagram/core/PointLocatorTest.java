@@ -0,0 +1,231 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PointLocatorTest {
+
+    private static double[] randomCoords(long seed, int size, double range){
+        Random random = new Random(seed);
+        double[] coords = new double[size * 2];
+        for ( int i=0 ; i<coords.length ; i++ ) coords[i] = random.nextDouble() * range;
+        return coords;
+    }
+
+    /**
+     * 全ての頂点と比べて最近傍の母点までの距離を求める
+     */
+    private static double nearestDistance(FlatTriangulation mesh, double x, double y){
+        double[] coords = mesh.getCoordinates();
+        double min = Double.POSITIVE_INFINITY;
+        for ( int i=0 ; i<mesh.getPointSize() ; i++ ){
+            min = Math.min(min, Math.hypot(coords[2*i] - x, coords[2*i+1] - y));
+        }
+        return min;
+    }
+
+    /**
+     * 点が三角形の内側または辺上にあるか
+     */
+    private static boolean contains(FlatTriangulation mesh, int t, double x, double y){
+        double[] coords = mesh.getCoordinates();
+        int[] triangles = mesh.getTriangleIndices();
+        for ( int e=3*t ; e<3*t+3 ; e++ ){
+            int a = triangles[e];
+            int b = triangles[FlatTriangulation.nextHalfEdge(e)];
+            // 三角形は時計回り 左側が外側
+            if ( Predicates.orient2d(coords[2*a], coords[2*a+1], coords[2*b], coords[2*b+1], x, y) > 0 ) return false;
+        }
+        return true;
+    }
+
+    private static void assertLocation(PointLocator locator, double x, double y, PointLocator.Location location){
+        FlatTriangulation mesh = locator.getTriangulation();
+        locator.locate(x, y, location);
+        String message = x + "," + y;
+        assertEquals(nearestDistance(mesh, x, y), location.getDistance(), 0, message);
+        assertEquals(location.getSite(), locator.findNearest(x, y), message);
+        if ( location.getTriangle() >= 0 ){
+            assertTrue(contains(mesh, location.getTriangle(), x, y), message);
+        }else{
+            // 凸包の外側ならどの三角形にも含まれない
+            for ( int t=0 ; t<mesh.getTriangleSize() ; t++ ){
+                assertFalse(contains(mesh, t, x, y), message);
+            }
+        }
+    }
+
+    /**
+     * 階層を辿って求めた最近傍の母点と三角形は全探索の結果と一致する
+     */
+    @Test
+    void hierarchyMatchesBruteForce(){
+        FlatTriangulation mesh = new FlatTriangulation(randomCoords(1, 20000, 1000));
+        PointLocator locator = new PointLocator(mesh);
+        assertSame(mesh, locator.getTriangulation());
+        assertTrue(locator.getLevelSize() >= 3, "levels : " + locator.getLevelSize());
+
+        Random random = new Random(2);
+        PointLocator.Location location = new PointLocator.Location();
+        int outside = 0;
+        for ( int i=0 ; i<500 ; i++ ){
+            double x = random.nextDouble() * 1200 - 100;
+            double y = random.nextDouble() * 1200 - 100;
+            assertLocation(locator, x, y, location);
+            if ( location.getTriangle() < 0 ) outside++;
+        }
+        assertTrue(outside > 0);
+        // 母点そのものは距離0
+        for ( int i=0 ; i<100 ; i++ ){
+            Point p = mesh.getPoint(i);
+            int site = locator.findNearest(p.getX(), p.getY());
+            assertEquals(p, locator.getSite(site));
+        }
+    }
+
+    /**
+     * 指定した母点から辿っても全探索の結果と一致し、使えない母点を指定すると階層を辿る
+     */
+    @Test
+    void hintMatchesBruteForce(){
+        double[] coords = randomCoords(6, 5000, 1000);
+        // 分割に含まれない重複点
+        coords[2] = coords[0];
+        coords[3] = coords[1];
+        FlatTriangulation mesh = new FlatTriangulation(coords);
+        PointLocator locator = new PointLocator(mesh);
+        assertEquals(-1, mesh.getInEdges()[1]);
+
+        Random random = new Random(7);
+        int hint = -1;
+        for ( int i=0 ; i<500 ; i++ ){
+            double x = random.nextDouble() * 1200 - 100;
+            double y = random.nextDouble() * 1200 - 100;
+            // 遠く離れた母点からも辿り着く
+            int start = i % 5 == 0 ? random.nextInt(mesh.getPointSize()) : hint;
+            hint = locator.findNearest(x, y, start);
+            Point site = locator.getSite(hint);
+            assertEquals(nearestDistance(mesh, x, y), Math.hypot(site.getX() - x, site.getY() - y), 0);
+        }
+        for ( int invalid : new int[]{-1, 1, mesh.getPointSize(), Integer.MAX_VALUE} ){
+            assertEquals(locator.findNearest(300, 400), locator.findNearest(300, 400, invalid));
+        }
+
+        // 格子 辿る途中で等距離の母点が多い
+        double[] grid = new double[60 * 60 * 2];
+        for ( int i=0 ; i<60 ; i++ ){
+            for ( int j=0 ; j<60 ; j++ ){
+                grid[2*(60*i+j)] = i;
+                grid[2*(60*i+j)+1] = j;
+            }
+        }
+        mesh = new FlatTriangulation(grid);
+        locator = new PointLocator(mesh);
+        for ( int i=0 ; i<300 ; i++ ){
+            double x = random.nextDouble() * 70 - 5;
+            double y = Math.floor(random.nextDouble() * 70 - 5) + 0.5;
+            hint = locator.findNearest(x, y, hint);
+            Point site = locator.getSite(hint);
+            assertEquals(nearestDistance(mesh, x, y), Math.hypot(site.getX() - x, site.getY() - y), 1e-12);
+        }
+    }
+
+    /**
+     * 分割済みの図から構築しても全探索の結果と一致する
+     */
+    @Test
+    void fromDiagram(){
+        List<Point> points = new ArrayList<>();
+        double[] coords = randomCoords(3, 3000, 300);
+        for ( int i=0 ; i<coords.length ; i+=2 ) points.add(new BasePoint(coords[i], coords[i+1]));
+        Random random = new Random(4);
+        PointLocator.Location location = new PointLocator.Location();
+        for ( DelaunayDiagram.Algorithm algorithm : DelaunayDiagram.Algorithm.values() ){
+            DelaunayDiagram diagram = new DelaunayDiagram(points);
+            assertThrows(IllegalStateException.class, () -> new PointLocator(diagram));
+            diagram.setAlgorithm(algorithm);
+            diagram.split(new Rectangle(-3, 303, 303, -3));
+            PointLocator locator = new PointLocator(diagram);
+            for ( int i=0 ; i<200 ; i++ ){
+                assertLocation(locator, random.nextDouble() * 320 - 10, random.nextDouble() * 320 - 10, location);
+            }
+        }
+    }
+
+    /**
+     * 凸包の外側の点は三角形を持たないが、最近傍の母点は求まる
+     */
+    @Test
+    void locateOutsideHull(){
+        PointLocator locator = new PointLocator(new FlatTriangulation(new double[]{
+                0, 0, 10, 0, 10, 10, 0, 10, 5, 5
+        }));
+        PointLocator.Location location = new PointLocator.Location();
+        locator.locate(20, 15, location);
+        assertEquals(-1, location.getTriangle());
+        assertEquals(new BasePoint(10, 10), locator.getSite(location.getSite()));
+        assertEquals(Math.hypot(10, 5), location.getDistance(), 1e-12);
+        // 辺のすぐ外側
+        locator.locate(5, -1e-9, location);
+        assertEquals(-1, location.getTriangle());
+        // 凸包の辺上は内側とみなす
+        assertLocation(locator, 5, 0, location);
+        assertTrue(location.getTriangle() >= 0);
+        assertLocation(locator, 6, 4.5, location);
+        assertEquals(new BasePoint(5, 5), locator.getSite(location.getSite()));
+    }
+
+    /**
+     * 一直線上に並ぶ点や格子点でも全探索の結果と一致する
+     */
+    @Test
+    void collinearMatchesBruteForce(){
+        // 三角形が無ければ探索できない
+        double[] line = new double[200];
+        for ( int i=0 ; i<100 ; i++ ){
+            line[2*i] = i;
+            line[2*i+1] = 2 * i;
+        }
+        PointLocator empty = new PointLocator(new FlatTriangulation(line));
+        assertEquals(-1, empty.findNearest(3, 3));
+        PointLocator.Location location = empty.locate(3, 3, new PointLocator.Location());
+        assertEquals(-1, location.getSite());
+        assertEquals(-1, location.getTriangle());
+        assertTrue(Double.isNaN(location.getDistance()));
+
+        // 一直線上の点と一点からなる扇形
+        double[] fan = Arrays.copyOf(line, line.length + 2);
+        fan[line.length] = 60;
+        fan[line.length + 1] = 0;
+        PointLocator locator = new PointLocator(new FlatTriangulation(fan));
+        Random random = new Random(5);
+        for ( int i=0 ; i<300 ; i++ ){
+            assertLocation(locator, random.nextDouble() * 120 - 10, random.nextDouble() * 220 - 10, location);
+        }
+
+        // 同一円周上の点が多い格子 上の層も一直線上に並びやすい
+        double[] grid = new double[150 * 150 * 2];
+        for ( int i=0 ; i<150 ; i++ ){
+            for ( int j=0 ; j<150 ; j++ ){
+                grid[2*(150*i+j)] = i;
+                grid[2*(150*i+j)+1] = j;
+            }
+        }
+        locator = new PointLocator(new FlatTriangulation(grid));
+        assertTrue(locator.getLevelSize() >= 2);
+        for ( int i=0 ; i<300 ; i++ ){
+            double x = random.nextDouble() * 160 - 5;
+            double y = random.nextDouble() * 160 - 5;
+            // 格子点と格子の中心で等距離の場合
+            if ( i % 3 == 0 ){
+                x = Math.floor(x) + 0.5;
+                y = Math.floor(y);
+            }
+            assertLocation(locator, x, y, location);
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolygonClipperTest {
+
+    private static Polygon polygon(double... coords){
+        List<Point> points = new ArrayList<>();
+        for ( int i=0 ; i<coords.length ; i+=2 ){
+            points.add(new BasePoint(coords[i], coords[i+1]));
+        }
+        return new Polygon(points);
+    }
+
+    private static Point[] cell(double left, double bottom, double right, double top){
+        return polygon(left, bottom, right, bottom, right, top, left, top).getPoints().toArray(new Point[0]);
+    }
+
+    /**
+     * 符号付き面積 反時計回りなら正
+     */
+    private static double area(Polygon polygon){
+        List<Point> points = polygon.getPoints();
+        double sum = 0;
+        for ( int i=0 ; i<points.size() ; i++ ){
+            Point a = points.get(i);
+            Point b = points.get((i+1) % points.size());
+            sum += a.getX() * b.getY() - b.getX() * a.getY();
+        }
+        return sum / 2;
+    }
+
+    private static double area(Polygon[] parts){
+        double sum = 0;
+        for ( Polygon part : parts ) sum += area(part);
+        return sum;
+    }
+
+    /**
+     * 凸多角形の内側にある穴は時計回りの多角形として残る
+     */
+    @Test
+    void clipAroundHole(){
+        // 穴の頂点の向きによらない
+        Polygon outer = polygon(0, 0, 0, 10, 10, 10, 10, 0);
+        Polygon hole = polygon(4, 4, 6, 4, 6, 6, 4, 6);
+        PolygonClipper clipper = new PolygonClipper(Arrays.asList(outer, hole));
+        assertFalse(clipper.contains(5, 5));
+        assertTrue(clipper.contains(2, 2));
+
+        Polygon[] parts = clipper.clip(cell(3, 3, 7, 7));
+        assertEquals(2, parts.length);
+        assertEquals(12, area(parts), 1e-9);
+        int holes = 0;
+        for ( Polygon part : parts ){
+            if ( area(part) < 0 ){
+                holes++;
+                assertEquals(-4, area(part), 1e-9);
+            }
+        }
+        assertEquals(1, holes);
+
+        // 穴を横切る
+        assertEquals(8 - 2, area(clipper.clip(cell(3, 3, 5, 7))), 1e-9);
+        // 穴の内側
+        assertEquals(0, clipper.clip(cell(4.5, 4.5, 5.5, 5.5)).length);
+        // 境界の外側
+        assertEquals(0, clipper.clip(cell(20, 20, 30, 30)).length);
+    }
+
+    /**
+     * 境界の頂点が凸多角形の辺上にちょうど載っている
+     */
+    @Test
+    void clipVertexOnEdge(){
+        Polygon diamond = polygon(5, 0, 10, 5, 5, 10, 0, 5);
+        PolygonClipper clipper = new PolygonClipper(Collections.singletonList(diamond));
+        Polygon[] right = clipper.clip(cell(5, 0, 15, 10));
+        assertEquals(1, right.length);
+        assertEquals(25, area(right), 1e-9);
+        Polygon[] top = clipper.clip(cell(0, 5, 10, 15));
+        assertEquals(1, top.length);
+        assertEquals(25, area(top), 1e-9);
+        // 頂点でのみ接する
+        assertEquals(0, area(clipper.clip(cell(10, 0, 20, 10))), 1e-9);
+    }
+
+    /**
+     * 平面を覆う凸多角形で切り取った面積の和は境界の面積に一致する
+     */
+    @Test
+    void clippedAreasSumToBoundary(){
+        // C字型の領域と穴、穴の中の島
+        Polygon c = polygon(0, 0, 100, 0, 100, 30, 40, 30, 40, 70, 100, 70, 100, 100, 0, 100);
+        Polygon hole = polygon(10, 10, 30, 10, 30, 90, 10, 90);
+        Polygon island = polygon(15, 40, 25, 40, 25, 60, 15, 60);
+        List<Polygon> boundary = Arrays.asList(c, hole, island);
+        double expected = 100 * 100 - 60 * 40 - 20 * 80 + 10 * 20;
+
+        PolygonClipper clipper = new PolygonClipper(boundary);
+        double sum = 0;
+        for ( int i=-1 ; i<11 ; i++ ){
+            for ( int j=-1 ; j<11 ; j++ ){
+                sum += area(clipper.clip(cell(i * 10.3, j * 10.3, (i+1) * 10.3, (j+1) * 10.3)));
+            }
+        }
+        assertEquals(expected, sum, 1e-6);
+
+        Random random = new Random(3);
+        List<Point> points = new ArrayList<>();
+        for ( int i=0 ; i<300 ; i++ ){
+            points.add(new BasePoint(random.nextDouble() * 120 - 10, random.nextDouble() * 120 - 10));
+        }
+        VoronoiDiagram diagram = new VoronoiDiagram(points);
+        diagram.split(boundary);
+        sum = 0;
+        for ( VoronoiDiagram.VoronoiArea area : diagram.getVoronoiAreas() ){
+            sum += area(area.parts);
+        }
+        assertEquals(expected, sum, 1e-6);
+    }
+
+}
@@ -0,0 +1,179 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoronoiCursorTest {
+
+    private static final Rectangle BORDER = new Rectangle(-3, 303, 303, -3);
+
+    private static VoronoiDiagram split(List<Point> points){
+        VoronoiDiagram diagram = new VoronoiDiagram(points);
+        diagram.split(BORDER);
+        return diagram;
+    }
+
+    private static double nearestDistance(List<Point> points, double x, double y){
+        double min = Double.POSITIVE_INFINITY;
+        for ( Point p : points ){
+            min = Math.min(min, Math.hypot(p.getX() - x, p.getY() - y));
+        }
+        return min;
+    }
+
+    /**
+     * 領域の出入りを文字列として記録する
+     */
+    private static class Recorder implements VoronoiCursor.Listener {
+
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onEnter(Point site, long sample){
+            events.add("enter " + site.getX() + " " + sample);
+        }
+
+        @Override
+        public void onExit(Point site, long sample){
+            events.add("exit " + site.getX() + " " + sample);
+        }
+    }
+
+    /**
+     * 軌跡の各点が属する領域の母点は全探索で求めた最近傍の母点と一致する
+     */
+    @Test
+    void matchesBruteForce(){
+        Random random = new Random(1);
+        List<Point> points = new ArrayList<>();
+        for ( int i=0 ; i<2000 ; i++ ){
+            points.add(new BasePoint(random.nextDouble() * 300, random.nextDouble() * 300));
+        }
+        VoronoiDiagram diagram = split(points);
+        VoronoiCursor cursor = new VoronoiCursor(diagram);
+        assertNull(cursor.getSite());
+        assertNull(cursor.getArea());
+        double x = 150, y = 150;
+        for ( int i=0 ; i<3000 ; i++ ){
+            // 時々遠くへ跳ぶ
+            if ( i % 500 == 0 ){
+                x = random.nextDouble() * 300;
+                y = random.nextDouble() * 300;
+            }else{
+                x = Math.min(300, Math.max(0, x + random.nextGaussian() * 3));
+                y = Math.min(300, Math.max(0, y + random.nextGaussian() * 3));
+            }
+            int site = cursor.moveTo(x, y);
+            assertTrue(site >= 0);
+            Point p = cursor.getSite();
+            assertEquals(nearestDistance(points, x, y), Math.hypot(p.getX() - x, p.getY() - y), 0);
+            assertSame(diagram.getVoronoiArea(p), cursor.getArea());
+        }
+        assertEquals(3000, cursor.getSampleCount());
+    }
+
+    /**
+     * 格子点の上を通る軌跡でも全探索で求めた最近傍の母点と一致する
+     */
+    @Test
+    void gridMatchesBruteForce(){
+        List<Point> points = new ArrayList<>();
+        for ( int i=0 ; i<=30 ; i++ ){
+            for ( int j=0 ; j<=30 ; j++ ){
+                points.add(new BasePoint(i * 10, j * 10));
+            }
+        }
+        VoronoiCursor cursor = new VoronoiCursor(split(points));
+        // 格子の行に沿って進み、領域の境界上や頂点を通る
+        for ( int i=0 ; i<=600 ; i++ ){
+            double x = i * 0.5;
+            double y = i % 2 == 0 ? 155 : 150;
+            cursor.moveTo(x, y);
+            Point p = cursor.getSite();
+            assertEquals(nearestDistance(points, x, y), Math.hypot(p.getX() - x, p.getY() - y), 1e-12);
+        }
+    }
+
+    /**
+     * 領域から出る通知は次の領域に入る通知より先に、同じ点の番号で呼ばれる
+     */
+    @Test
+    void enterExitOrder(){
+        List<Point> points = Arrays.asList(
+                new BasePoint(50, 150), new BasePoint(150, 150), new BasePoint(250, 150),
+                new BasePoint(150, 50), new BasePoint(150, 250)
+        );
+        VoronoiCursor cursor = new VoronoiCursor(split(points));
+        Recorder recorder = new Recorder();
+        cursor.setListener(recorder);
+        double[] xs = {10, 60, 99, 101, 140, 210, 290};
+        for ( double x : xs ) cursor.moveTo(x, 145);
+        cursor.reset();
+        assertEquals(Arrays.asList(
+                "enter 50.0 0",
+                "exit 50.0 3", "enter 150.0 3",
+                "exit 150.0 5", "enter 250.0 5",
+                "exit 250.0 7"
+        ), recorder.events);
+
+        // 新しい軌跡は0番目の点から数える
+        recorder.events.clear();
+        cursor.moveTo(140, 145);
+        assertEquals(Collections.singletonList("enter 150.0 0"), recorder.events);
+        assertEquals(1, cursor.getSampleCount());
+
+        // リスナーを外しても探索は続く
+        cursor.setListener(null);
+        cursor.moveTo(10, 145);
+        assertEquals(new BasePoint(50, 150), cursor.getSite());
+        assertEquals(1, recorder.events.size());
+    }
+
+    /**
+     * 境界から指定した距離以上入り込むまで隣の領域へ移らない
+     */
+    @Test
+    void hysteresis(){
+        List<Point> points = Arrays.asList(
+                new BasePoint(100, 150), new BasePoint(200, 150),
+                new BasePoint(150, 20), new BasePoint(150, 280)
+        );
+        VoronoiCursor cursor = new VoronoiCursor(split(points));
+        assertThrows(IllegalArgumentException.class, () -> cursor.setHysteresis(-1));
+        assertThrows(IllegalArgumentException.class, () -> cursor.setHysteresis(Double.NaN));
+        cursor.setHysteresis(5);
+        Recorder recorder = new Recorder();
+        cursor.setListener(recorder);
+
+        // 境界は x = 150
+        cursor.moveTo(120, 150);
+        cursor.moveTo(152, 150);
+        cursor.moveTo(154.9, 150);
+        assertEquals(new BasePoint(100, 150), cursor.getSite());
+        cursor.moveTo(155.1, 150);
+        assertEquals(new BasePoint(200, 150), cursor.getSite());
+        // 戻る方向にも同じ幅だけ留まる
+        cursor.moveTo(148, 150);
+        cursor.moveTo(145.1, 150);
+        assertEquals(new BasePoint(200, 150), cursor.getSite());
+        cursor.moveTo(144.9, 150);
+        assertEquals(new BasePoint(100, 150), cursor.getSite());
+        assertEquals(Arrays.asList(
+                "enter 100.0 0",
+                "exit 100.0 3", "enter 200.0 3",
+                "exit 200.0 6", "enter 100.0 6"
+        ), recorder.events);
+
+        // 境界の付近を行き来しても出入りを繰り返さない
+        recorder.events.clear();
+        for ( int i=0 ; i<100 ; i++ ) cursor.moveTo(i % 2 == 0 ? 146 : 154, 150);
+        assertTrue(recorder.events.isEmpty());
+        cursor.setHysteresis(0);
+        cursor.moveTo(150.5, 150);
+        assertEquals(new BasePoint(200, 150), cursor.getSite());
+    }
+
+}
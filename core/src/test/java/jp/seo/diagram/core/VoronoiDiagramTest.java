@@ -0,0 +1,237 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoronoiDiagramTest {
+
+    private static List<Point> randomPoints(long seed, int size){
+        Random random = new Random(seed);
+        List<Point> points = new ArrayList<>(size);
+        for ( int i=0 ; i<size ; i++ ){
+            points.add(new BasePoint(random.nextDouble() * 300, random.nextDouble() * 300));
+        }
+        return points;
+    }
+
+    private static void assertSameArea(VoronoiDiagram.VoronoiArea expected, VoronoiDiagram.VoronoiArea actual){
+        assertNotNull(actual, expected.center.toString());
+        assertEquals(expected.enclosed, actual.enclosed);
+        assertEquals(expected.clipped, actual.clipped);
+        Point[] a = expected.points.clone();
+        Point[] b = actual.points.clone();
+        assertEquals(a.length, b.length, expected.center.toString());
+        Arrays.sort(a, Point::compare);
+        Arrays.sort(b, Point::compare);
+        for ( int i=0 ; i<a.length ; i++ ){
+            assertEquals(0, a[i].measure(b[i]), 1e-6, expected.center.toString());
+        }
+    }
+
+    /**
+     * 多角形の符号付き面積. 反時計回りなら正
+     */
+    private static double area(Point[] polygon){
+        double sum = 0;
+        for ( int i=0 ; i<polygon.length ; i++ ){
+            Point a = polygon[i];
+            Point b = polygon[(i + 1) % polygon.length];
+            sum += a.getX() * b.getY() - b.getX() * a.getY();
+        }
+        return sum / 2;
+    }
+
+    /**
+     * ボロノイ領域は矩形を隙間なく覆う閉じた多角形で、各領域はその母点に最も近い点からなる
+     */
+    @Test
+    void areasTileBorder(){
+        Random random = new Random(11);
+        List<Point> points = new ArrayList<>();
+        for ( int i=0 ; i<1000 ; i++ ){
+            points.add(new BasePoint(random.nextDouble() * 1000, random.nextDouble() * 500));
+        }
+        Rectangle border = new Rectangle(-10, 520, 1010, -20);
+        for ( DelaunayDiagram.Algorithm algorithm : DelaunayDiagram.Algorithm.values() ){
+            VoronoiDiagram diagram = new VoronoiDiagram(points);
+            diagram.setAlgorithm(algorithm);
+            diagram.split(border);
+            Collection<VoronoiDiagram.VoronoiArea> areas = diagram.getVoronoiAreas();
+            assertEquals(points.size(), areas.size(), algorithm.name());
+            double sum = 0;
+            int clipped = 0;
+            for ( VoronoiDiagram.VoronoiArea area : areas ){
+                // 矩形で切り取られた領域も閉じている
+                assertTrue(area.enclosed);
+                if ( area.clipped ) clipped++;
+                double value = area(area.points);
+                assertTrue(value > 0, "not counter-clockwise : " + area.center);
+                sum += value;
+                // 領域の頂点は母点から最も近い
+                for ( Point vertex : area.points ){
+                    double d = area.center.measure(vertex);
+                    for ( Point other : points ){
+                        assertTrue(other.measure(vertex) >= d * (1 - 1e-9) - 1e-9, algorithm.name());
+                    }
+                }
+            }
+            assertTrue(clipped > 0);
+            assertEquals(clipped, diagram.getMetrics().getOpenAreas());
+            double expected = (border.right - border.left) * (border.top - border.bottom);
+            assertEquals(expected, sum, expected * 1e-9, algorithm.name());
+        }
+    }
+
+    /**
+     * visitorへ渡されるボロノイ領域は通常の分割の結果と一致する
+     */
+    @Test
+    void visitMatchesSplit(){
+        Rectangle border = new Rectangle(-3, 303, 303, -3);
+        List<Point> points = randomPoints(3, 500);
+        for ( DelaunayDiagram.Algorithm algorithm : DelaunayDiagram.Algorithm.values() ){
+            VoronoiDiagram expected = new VoronoiDiagram(points);
+            expected.setAlgorithm(algorithm);
+            expected.split(border);
+            final Map<Point, VoronoiDiagram.VoronoiArea> areas = new HashMap<>();
+            VoronoiDiagram diagram = new VoronoiDiagram(points);
+            diagram.setAlgorithm(algorithm);
+            diagram.split(border, new DiagramVisitor() {
+                @Override
+                public void visitVoronoiArea(VoronoiDiagram.VoronoiArea area){
+                    assertNull(areas.put(area.center, area), area.center.toString());
+                }
+            });
+            assertEquals(expected.getVoronoiAreas().size(), areas.size(), algorithm.name());
+            for ( VoronoiDiagram.VoronoiArea area : expected.getVoronoiAreas() ){
+                assertSameArea(area, areas.get(area.center));
+            }
+            assertNull(diagram.getVoronoiAreas());
+        }
+    }
+
+    /**
+     * 各領域を並列に計算しても逐次的に計算した結果と一致する
+     */
+    @Test
+    void parallelMatchesSequential(){
+        Rectangle border = new Rectangle(-3, 303, 303, -3);
+        List<Point> points = randomPoints(11, 3000);
+        for ( DelaunayDiagram.Algorithm algorithm : DelaunayDiagram.Algorithm.values() ){
+            VoronoiDiagram sequential = new VoronoiDiagram(points);
+            sequential.setAlgorithm(algorithm);
+            sequential.setParallelism(1);
+            sequential.split(border);
+            VoronoiDiagram parallel = new VoronoiDiagram(points);
+            parallel.setAlgorithm(algorithm);
+            parallel.setParallelism(8);
+            parallel.split(border);
+            assertEquals(sequential.getVoronoiAreas().size(), parallel.getVoronoiAreas().size(), algorithm.name());
+            for ( VoronoiDiagram.VoronoiArea area : sequential.getVoronoiAreas() ){
+                VoronoiDiagram.VoronoiArea other = parallel.getVoronoiArea(area.center);
+                assertNotNull(other, area.center.toString());
+                assertEquals(area.enclosed, other.enclosed);
+                assertEquals(area.clipped, other.clipped);
+                assertArrayEquals(area.points, other.points, area.center.toString());
+            }
+        }
+    }
+
+    /**
+     * 遅延計算した領域と辺は複数のスレッドから要求しても一括で計算した結果と一致する
+     */
+    @Test
+    void lazyMatchesEager() throws Exception {
+        Rectangle border = new Rectangle(-3, 303, 303, -3);
+        List<Point> points = randomPoints(13, 2000);
+        VoronoiDiagram expected = new VoronoiDiagram(points);
+        expected.split(border);
+        final VoronoiDiagram diagram = new VoronoiDiagram(points);
+        diagram.setLazyAreas(64);
+        diagram.split(border);
+
+        assertEquals(expected.getEdges(), diagram.getEdges());
+        Collection<VoronoiDiagram.VoronoiArea> areas = diagram.getVoronoiAreas();
+        assertEquals(expected.getVoronoiAreas().size(), areas.size());
+        int cnt = 0;
+        for ( VoronoiDiagram.VoronoiArea area : areas ){
+            assertSameArea(expected.getVoronoiArea(area.center), area);
+            cnt++;
+        }
+        assertEquals(areas.size(), cnt);
+
+        // 複数のスレッドから同時に要求する
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for ( int t=0 ; t<4 ; t++ ){
+                final List<Point> order = new ArrayList<>(points);
+                Collections.shuffle(order, new Random(t));
+                futures.add(executor.submit(() -> {
+                    for ( Point p : order ){
+                        assertSameArea(expected.getVoronoiArea(p), diagram.getVoronoiArea(p));
+                    }
+                }));
+            }
+            for ( Future<?> future : futures ) future.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 母点を追加した後のボロノイ領域は分割し直した結果と一致する
+     */
+    @Test
+    void insertMatchesRebuild(){
+        Rectangle border = new Rectangle(-3, 303, 303, -3);
+        List<Point> points = randomPoints(5, 300);
+        VoronoiDiagram diagram = new VoronoiDiagram(points);
+        diagram.split(border);
+        List<Point> current = new ArrayList<>(points);
+        for ( Point point : randomPoints(6, 50) ){
+            Set<Point> changed = diagram.insert(point);
+            assertTrue(changed.contains(point));
+            current.add(point);
+        }
+        VoronoiDiagram expected = new VoronoiDiagram(current);
+        expected.split(border);
+        assertEquals(expected.getVoronoiAreas().size(), diagram.getVoronoiAreas().size());
+        for ( VoronoiDiagram.VoronoiArea area : expected.getVoronoiAreas() ){
+            // 凸包付近の分割は外郭の三角形の影響を受けるので内側の母点のみ比べる
+            Point c = area.center;
+            if ( c.getX() < 30 || c.getX() > 270 || c.getY() < 30 || c.getY() > 270 ) continue;
+            assertSameArea(area, diagram.getVoronoiArea(c));
+        }
+    }
+
+    /**
+     * 母点を削除した後のボロノイ領域は分割し直した結果と一致する
+     */
+    @Test
+    void removeMatchesRebuild(){
+        Rectangle border = new Rectangle(-3, 303, 303, -3);
+        List<Point> points = randomPoints(7, 400);
+        VoronoiDiagram diagram = new VoronoiDiagram(points);
+        diagram.split(border);
+        List<Point> current = new ArrayList<>(points);
+        for ( int i=0 ; i<50 ; i++ ){
+            Point point = current.remove(i);
+            assertFalse(diagram.remove(point).contains(point));
+            assertNull(diagram.getVoronoiArea(point));
+        }
+        VoronoiDiagram expected = new VoronoiDiagram(current);
+        expected.split(border);
+        assertEquals(expected.getVoronoiAreas().size(), diagram.getVoronoiAreas().size());
+        for ( VoronoiDiagram.VoronoiArea area : expected.getVoronoiAreas() ){
+            Point c = area.center;
+            if ( c.getX() < 30 || c.getX() > 270 || c.getY() < 30 || c.getY() > 270 ) continue;
+            assertSameArea(area, diagram.getVoronoiArea(c));
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package jp.seo.diagram.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoronoiRasterTest {
+
+    private static List<Point> randomPoints(long seed, int size){
+        Random random = new Random(seed);
+        List<Point> points = new ArrayList<>(size);
+        for ( int i=0 ; i<size ; i++ ){
+            points.add(new BasePoint(random.nextDouble() * 300, random.nextDouble() * 300));
+        }
+        return points;
+    }
+
+    private static Polygon polygon(double... coords){
+        List<Point> points = new ArrayList<>();
+        for ( int i=0 ; i<coords.length ; i+=2 ){
+            points.add(new BasePoint(coords[i], coords[i+1]));
+        }
+        return new Polygon(points);
+    }
+
+    private static double nearestDistance(List<Point> points, double x, double y){
+        double min = Double.POSITIVE_INFINITY;
+        for ( Point p : points ){
+            min = Math.min(min, Math.hypot(p.getX() - x, p.getY() - y));
+        }
+        return min;
+    }
+
+    private static void assertNearest(VoronoiRaster raster, List<Point> points, double x, double y){
+        int id = raster.find(x, y);
+        assertTrue(id >= 0, x + "," + y);
+        double d = Math.hypot(raster.getSiteX(id) - x, raster.getSiteY(id) - y);
+        assertEquals(nearestDistance(points, x, y), d, 0, x + "," + y);
+    }
+
+    /**
+     * 格子の大きさによらず、求めた領域の母点は全探索で求めた最近傍の母点と一致する
+     */
+    @Test
+    void matchesBruteForce(){
+        List<Point> points = randomPoints(1, 3000);
+        Rectangle border = new Rectangle(-3, 303, 303, -3);
+        VoronoiDiagram diagram = new VoronoiDiagram(points);
+        assertThrows(IllegalStateException.class, () -> new VoronoiRaster(diagram, 10, 10));
+        diagram.split(border);
+        assertThrows(IllegalArgumentException.class, () -> new VoronoiRaster(diagram, 0, 10));
+
+        Random random = new Random(2);
+        for ( int size : new int[]{1, 16, 200} ){
+            VoronoiRaster raster = new VoronoiRaster(diagram, size, size);
+            assertEquals(points.size(), raster.getSiteSize());
+            for ( int i=0 ; i<3000 ; i++ ){
+                assertNearest(raster, points, random.nextDouble() * 306 - 3, random.nextDouble() * 306 - 3);
+            }
+            // 母点そのもの
+            for ( int i=0 ; i<100 ; i++ ){
+                Point p = points.get(i);
+                assertEquals(p, raster.getSite(raster.find(p)));
+            }
+            assertEquals(-1, raster.find(-10, 150));
+            assertEquals(-1, raster.find(150, 400));
+            assertEquals(-1, raster.find(Double.NaN, 150));
+        }
+    }
+
+    /**
+     * 遅延計算のモードで分割した図からも同じ索引を構築できる
+     */
+    @Test
+    void lazyMatchesEager(){
+        List<Point> points = randomPoints(3, 2000);
+        Rectangle border = new Rectangle(-3, 303, 303, -3);
+        VoronoiDiagram eager = new VoronoiDiagram(points);
+        eager.split(border);
+        VoronoiDiagram lazy = new VoronoiDiagram(points);
+        lazy.setLazyAreas(32);
+        lazy.split(border);
+        VoronoiRaster expected = new VoronoiRaster(eager, 64, 64);
+        VoronoiRaster raster = new VoronoiRaster(lazy, 64, 64);
+        assertEquals(expected.getAmbiguousCellSize(), raster.getAmbiguousCellSize());
+        Random random = new Random(4);
+        for ( int i=0 ; i<3000 ; i++ ){
+            double x = random.nextDouble() * 300;
+            double y = random.nextDouble() * 300;
+            int a = expected.find(x, y);
+            int b = raster.find(x, y);
+            assertEquals(expected.getSiteX(a), raster.getSiteX(b));
+            assertEquals(expected.getSiteY(a), raster.getSiteY(b));
+        }
+    }
+
+    /**
+     * 境界の多角形で切り取った図では、境界の外側と穴にある点は-1になる
+     */
+    @Test
+    void clippedBoundary(){
+        // C字型の領域と穴、穴の中の島
+        Polygon c = polygon(0, 0, 300, 0, 300, 90, 120, 90, 120, 210, 300, 210, 300, 300, 0, 300);
+        Polygon hole = polygon(30, 30, 90, 30, 90, 270, 30, 270);
+        Polygon island = polygon(45, 120, 75, 120, 75, 180, 45, 180);
+        List<Polygon> boundary = Arrays.asList(c, hole, island);
+        PolygonClipper clipper = new PolygonClipper(boundary);
+
+        List<Point> points = randomPoints(5, 1500);
+        VoronoiDiagram diagram = new VoronoiDiagram(points);
+        diagram.split(boundary);
+        Random random = new Random(6);
+        for ( int size : new int[]{1, 50} ){
+            VoronoiRaster raster = new VoronoiRaster(diagram, size, size);
+            int inside = 0, outside = 0;
+            for ( int i=0 ; i<5000 ; i++ ){
+                double x = random.nextDouble() * 340 - 20;
+                double y = random.nextDouble() * 340 - 20;
+                if ( clipper.contains(x, y) ){
+                    assertNearest(raster, points, x, y);
+                    inside++;
+                }else{
+                    assertEquals(-1, raster.find(x, y), x + "," + y);
+                    outside++;
+                }
+            }
+            assertTrue(inside > 0 && outside > 0);
+            // 穴の中と島の中
+            assertEquals(-1, raster.find(40, 60));
+            assertEquals(-1, raster.find(200, 150));
+            assertNearest(raster, points, 60, 150);
+        }
+    }
+
+}